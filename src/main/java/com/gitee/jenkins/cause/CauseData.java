@@ -1,6 +1,9 @@
 package com.gitee.jenkins.cause;
 
 import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Iterators;
 import hudson.markup.EscapedMarkupFormatter;
 import jenkins.model.Jenkins;
 import net.karneim.pojobuilder.GeneratePojoBuilder;
@@ -9,7 +12,9 @@ import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
+import java.lang.ref.SoftReference;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -17,52 +22,65 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * @author Robin Müller
  */
 public final class CauseData {
+    /**
+     * The same repositories, branches and users appear in thousands of builds and queue items.
+     */
+    private static final Interner<String> STRINGS = Interners.newWeakInterner();
+    private static final String JSON_BODY_VARIABLE = "jsonBody";
+    private static final AtomicLong BUILD_VARIABLES_COMPUTED = new AtomicLong();
+
+    // the strings shared by many causes are not final, readResolve interns them in place
     private final ActionType actionType;
     private final Integer sourceProjectId;
     private final Integer targetProjectId;
-    private final String branch;
-    private final String pathWithNamespace;
-    private final String sourceBranch;
-    private final String userName;
-    private final String userEmail;
-    private final String sourceRepoHomepage;
-    private final String sourceRepoName;
-    private final String sourceNamespace;
-    private final String sourceRepoUrl;
-    private final String sourceRepoSshUrl;
-    private final String sourceRepoHttpUrl;
-    private final String pullRequestTitle;
+    private String branch;
+    private String pathWithNamespace;
+    private String sourceBranch;
+    private String userName;
+    private String userEmail;
+    private String sourceRepoHomepage;
+    private String sourceRepoName;
+    private String sourceNamespace;
+    private String sourceRepoUrl;
+    private String sourceRepoSshUrl;
+    private String sourceRepoHttpUrl;
+    private String pullRequestTitle;
     private final String pullRequestDescription;
     private final Integer pullRequestId;
     private final Integer pullRequestIid;
-    private final String pullRequestState;
-    private final String mergedByUser;
-    private final String pullRequestAssignee;
+    private String pullRequestState;
+    private String mergedByUser;
+    private String pullRequestAssignee;
     private final Integer pullRequestTargetProjectId;
-    private final String targetBranch;
-    private final String targetRepoName;
-    private final String targetNamespace;
-    private final String targetRepoSshUrl;
-    private final String targetRepoHttpUrl;
-    private final String triggeredByUser;
-    private final String before;
-    private final String after;
-    private final String lastCommit;
-    private final String targetProjectUrl;
-    private final String triggerPhrase;
-    private final String ref;
-    private final String beforeSha;
-    private final String isTag;
-    private final String sha;
-    private final String status;
+    private String targetBranch;
+    private String targetRepoName;
+    private String targetNamespace;
+    private String targetRepoSshUrl;
+    private String targetRepoHttpUrl;
+    private String triggeredByUser;
+    private String before;
+    private String after;
+    private String lastCommit;
+    private String targetProjectUrl;
+    private String triggerPhrase;
+    private String ref;
+    private String beforeSha;
+    private String isTag;
+    private String sha;
+    private String status;
     private final String stages;
     private final String createdAt;
     private final String finishedAt;
     private final String buildDuration;
-    private final String jsonBody;
+    /**
+     * Only set for payloads that could not be put into the {@link PayloadStore} and for builds not migrated yet.
+     */
+    private String jsonBody;
+    private String jsonBodyHash;
     private final String noteBody;
     private final boolean created;
     private final boolean deleted;
+    private transient volatile SoftReference<Map<String, String>> buildVariables;
 
     @GeneratePojoBuilder(withFactoryMethod = "*")
     CauseData(ActionType actionType, Integer sourceProjectId, Integer targetProjectId, String branch, String sourceBranch, String userName,
@@ -72,58 +90,123 @@ public final class CauseData {
               String targetRepoSshUrl, String targetRepoHttpUrl, String triggeredByUser, String before, String after, String lastCommit,
               String targetProjectUrl, String triggerPhrase, String pullRequestState, String mergedByUser, String pullRequestAssignee,
               String ref, String isTag, String sha, String beforeSha, String status, String stages, String createdAt, String finishedAt,
-              String buildDuration, String pathWithNamespace, boolean created, boolean deleted, String jsonBody, String noteBody) {
+              String buildDuration, String pathWithNamespace, boolean created, boolean deleted, String jsonBody, String jsonBodyHash, String noteBody) {
         this.actionType = checkNotNull(actionType, "actionType must not be null.");
         this.sourceProjectId = checkNotNull(sourceProjectId, "sourceProjectId must not be null.");
         this.targetProjectId = checkNotNull(targetProjectId, "targetProjectId must not be null.");
-        this.branch = checkNotNull(branch, "branch must not be null.");
-        this.sourceBranch = checkNotNull(sourceBranch, "sourceBranch must not be null.");
-        this.userName = checkNotNull(userName, "userName must not be null.");
-        this.userEmail = userEmail == null ? "" : userEmail;
-        this.sourceRepoHomepage = sourceRepoHomepage == null ? "" : sourceRepoHomepage;
-        this.sourceRepoName = checkNotNull(sourceRepoName, "sourceRepoName must not be null.");
-        this.sourceNamespace = checkNotNull(sourceNamespace, "sourceNamespace must not be null.");
-        this.sourceRepoUrl = sourceRepoUrl == null ? sourceRepoSshUrl : sourceRepoUrl;
-        this.sourceRepoSshUrl = checkNotNull(sourceRepoSshUrl, "sourceRepoSshUrl must not be null.");
-        this.sourceRepoHttpUrl = checkNotNull(sourceRepoHttpUrl, "sourceRepoHttpUrl must not be null.");
-        this.pullRequestTitle = checkNotNull(pullRequestTitle, "pullRequestTitle must not be null.");
+        this.branch = intern(checkNotNull(branch, "branch must not be null."));
+        this.sourceBranch = intern(checkNotNull(sourceBranch, "sourceBranch must not be null."));
+        this.userName = intern(checkNotNull(userName, "userName must not be null."));
+        this.userEmail = intern(userEmail == null ? "" : userEmail);
+        this.sourceRepoHomepage = intern(sourceRepoHomepage == null ? "" : sourceRepoHomepage);
+        this.sourceRepoName = intern(checkNotNull(sourceRepoName, "sourceRepoName must not be null."));
+        this.sourceNamespace = intern(checkNotNull(sourceNamespace, "sourceNamespace must not be null."));
+        this.sourceRepoUrl = intern(sourceRepoUrl == null ? sourceRepoSshUrl : sourceRepoUrl);
+        this.sourceRepoSshUrl = intern(checkNotNull(sourceRepoSshUrl, "sourceRepoSshUrl must not be null."));
+        this.sourceRepoHttpUrl = intern(checkNotNull(sourceRepoHttpUrl, "sourceRepoHttpUrl must not be null."));
+        this.pullRequestTitle = intern(checkNotNull(pullRequestTitle, "pullRequestTitle must not be null."));
         this.pullRequestDescription = pullRequestDescription == null ? "" : pullRequestDescription;
         this.pullRequestId = pullRequestId;
         this.pullRequestIid = pullRequestIid;
-        this.pullRequestState = pullRequestState == null ? "" : pullRequestState;
-        this.mergedByUser = mergedByUser == null ? "" : mergedByUser;
-        this.pullRequestAssignee = pullRequestAssignee == null ? "" : pullRequestAssignee;
+        this.pullRequestState = intern(pullRequestState == null ? "" : pullRequestState);
+        this.mergedByUser = intern(mergedByUser == null ? "" : mergedByUser);
+        this.pullRequestAssignee = intern(pullRequestAssignee == null ? "" : pullRequestAssignee);
         this.pullRequestTargetProjectId = pullRequestTargetProjectId;
-        this.targetBranch = checkNotNull(targetBranch, "targetBranch must not be null.");
-        this.targetRepoName = checkNotNull(targetRepoName, "targetRepoName must not be null.");
-        this.targetNamespace = checkNotNull(targetNamespace, "targetNamespace must not be null.");
-        this.targetRepoSshUrl = checkNotNull(targetRepoSshUrl, "targetRepoSshUrl must not be null.");
-        this.targetRepoHttpUrl = checkNotNull(targetRepoHttpUrl, "targetRepoHttpUrl must not be null.");
-        this.triggeredByUser = checkNotNull(triggeredByUser, "triggeredByUser must not be null.");
-        this.before = before == null ? "" : before;
-        this.after = after == null ? "" : after;
+        this.targetBranch = intern(checkNotNull(targetBranch, "targetBranch must not be null."));
+        this.targetRepoName = intern(checkNotNull(targetRepoName, "targetRepoName must not be null."));
+        this.targetNamespace = intern(checkNotNull(targetNamespace, "targetNamespace must not be null."));
+        this.targetRepoSshUrl = intern(checkNotNull(targetRepoSshUrl, "targetRepoSshUrl must not be null."));
+        this.targetRepoHttpUrl = intern(checkNotNull(targetRepoHttpUrl, "targetRepoHttpUrl must not be null."));
+        this.triggeredByUser = intern(checkNotNull(triggeredByUser, "triggeredByUser must not be null."));
+        this.before = intern(before == null ? "" : before);
+        this.after = intern(after == null ? "" : after);
 //        this.lastCommit = checkNotNull(lastCommit, "lastCommit must not be null");
         // 直接checkout到分支，而非commit sha，暂时不需要确保lastCommit 非空
-        this.lastCommit = lastCommit;
-        this.targetProjectUrl = targetProjectUrl;
-        this.triggerPhrase = triggerPhrase;
-        this.ref = ref;
-        this.isTag = isTag;
-        this.sha = sha;
-        this.beforeSha = beforeSha;
-        this.status = status;
+        this.lastCommit = intern(lastCommit);
+        this.targetProjectUrl = intern(targetProjectUrl);
+        this.triggerPhrase = intern(triggerPhrase);
+        this.ref = intern(ref);
+        this.isTag = intern(isTag);
+        this.sha = intern(sha);
+        this.beforeSha = intern(beforeSha);
+        this.status = intern(status);
         this.stages = stages;
         this.createdAt = createdAt;
         this.finishedAt = finishedAt;
         this.buildDuration = buildDuration;
-        this.pathWithNamespace = pathWithNamespace;
+        this.pathWithNamespace = intern(pathWithNamespace);
         this.created = created;
         this.deleted = deleted;
-        this.jsonBody = jsonBody;
+        this.jsonBodyHash = intern(jsonBodyHash);
+        this.jsonBody = jsonBodyHash == null ? jsonBody : null;
         this.noteBody = noteBody;
     }
 
+    /**
+     * Builds and queue items loaded from disk share the strings of their repositories, branches and users, too.
+     */
+    private Object readResolve() {
+        branch = intern(branch);
+        pathWithNamespace = intern(pathWithNamespace);
+        sourceBranch = intern(sourceBranch);
+        userName = intern(userName);
+        userEmail = intern(userEmail);
+        sourceRepoHomepage = intern(sourceRepoHomepage);
+        sourceRepoName = intern(sourceRepoName);
+        sourceNamespace = intern(sourceNamespace);
+        sourceRepoUrl = intern(sourceRepoUrl);
+        sourceRepoSshUrl = intern(sourceRepoSshUrl);
+        sourceRepoHttpUrl = intern(sourceRepoHttpUrl);
+        pullRequestTitle = intern(pullRequestTitle);
+        pullRequestState = intern(pullRequestState);
+        mergedByUser = intern(mergedByUser);
+        pullRequestAssignee = intern(pullRequestAssignee);
+        targetBranch = intern(targetBranch);
+        targetRepoName = intern(targetRepoName);
+        targetNamespace = intern(targetNamespace);
+        targetRepoSshUrl = intern(targetRepoSshUrl);
+        targetRepoHttpUrl = intern(targetRepoHttpUrl);
+        triggeredByUser = intern(triggeredByUser);
+        before = intern(before);
+        after = intern(after);
+        lastCommit = intern(lastCommit);
+        targetProjectUrl = intern(targetProjectUrl);
+        triggerPhrase = intern(triggerPhrase);
+        ref = intern(ref);
+        beforeSha = intern(beforeSha);
+        isTag = intern(isTag);
+        sha = intern(sha);
+        status = intern(status);
+        jsonBodyHash = intern(jsonBodyHash);
+        return this;
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : STRINGS.intern(value);
+    }
+
+    /**
+     * @return the build variables of this cause; the payload in {@code jsonBody} is only loaded when it is read
+     */
     public Map<String, String> getBuildVariables() {
+        SoftReference<Map<String, String>> reference = buildVariables;
+        Map<String, String> variables = reference == null ? null : reference.get();
+        if (variables == null) {
+            variables = Collections.unmodifiableMap(computeBuildVariables());
+            buildVariables = new SoftReference<>(variables);
+            BUILD_VARIABLES_COMPUTED.incrementAndGet();
+        }
+        return new BuildVariables(variables);
+    }
+
+    /**
+     * @return how often the build variables have been computed since start up
+     */
+    public static long getBuildVariablesComputedCount() {
+        return BUILD_VARIABLES_COMPUTED.get();
+    }
+
+    private Map<String, String> computeBuildVariables() {
         MapWrapper<String, String> variables = new MapWrapper<>(new HashMap<String, String>());
         variables.put("giteeBranch", branch);
         variables.put("giteeSourceBranch", sourceBranch);
@@ -166,7 +249,6 @@ public final class CauseData {
         variables.put("createdAt", createdAt);
         variables.put("finishedAt", finishedAt);
         variables.put("duration", buildDuration);
-        variables.put("jsonBody", jsonBody);
         variables.put("noteBody", noteBody);
         variables.putIfNotNull("giteeTriggerPhrase", triggerPhrase);
         return variables;
@@ -304,7 +386,31 @@ public final class CauseData {
 
     public String getBuildDuration() { return buildDuration; }
 
-    public String getJsonBody() { return jsonBody; }
+    public String getJsonBody() {
+        if (jsonBody == null && jsonBodyHash != null) {
+            return PayloadStore.get().get(jsonBodyHash);
+        }
+        return jsonBody;
+    }
+
+    public String getJsonBodyHash() { return jsonBodyHash; }
+
+    /**
+     * Moves an inline payload of an old build into the {@link PayloadStore}.
+     *
+     * @return {@code true} if the payload has been moved
+     */
+    boolean migrateJsonBody() {
+        if (jsonBody == null || jsonBodyHash != null) {
+            return false;
+        }
+        jsonBodyHash = intern(PayloadStore.get().put(jsonBody));
+        if (jsonBodyHash == null) {
+            return false;
+        }
+        jsonBody = null;
+        return true;
+    }
 
     public String getNoteBody() { return noteBody; }
 
@@ -396,7 +502,8 @@ public final class CauseData {
             .append(pathWithNamespace, causeData.getPathWithNamespace())
             .append(created, causeData.getCreated())
             .append(deleted, causeData.getDeleted())
-            .append(jsonBody, causeData.getJsonBody())
+            .append(jsonBodyHash, causeData.jsonBodyHash)
+            .append(jsonBody, causeData.jsonBody)
             .append(noteBody, causeData.getNoteBody())
             .isEquals();
     }
@@ -447,6 +554,7 @@ public final class CauseData {
             .append(pathWithNamespace)
             .append(created)
             .append(deleted)
+            .append(jsonBodyHash)
             .append(jsonBody)
             .append(noteBody)
             .toHashCode();
@@ -498,7 +606,7 @@ public final class CauseData {
             .append("pathWithNamespace", pathWithNamespace)
             .append("created", created)
             .append("deleted", deleted)
-            .append("jsonBody", jsonBody)
+            .append("jsonBodyHash", jsonBodyHash)
             .append("noteBody", noteBody)
             .toString();
     }
@@ -576,6 +684,62 @@ public final class CauseData {
         abstract String getShortDescription(CauseData data);
     }
 
+    /**
+     * The cached variables plus {@code jsonBody}, which is read from the {@link PayloadStore} on access.
+     */
+    private class BuildVariables extends AbstractMap<String, String> {
+
+        private final Map<String, String> variables;
+
+        BuildVariables(Map<String, String> variables) {
+            this.variables = variables;
+        }
+
+        @Override
+        public String get(Object key) {
+            return JSON_BODY_VARIABLE.equals(key) ? getJsonBody() : variables.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return JSON_BODY_VARIABLE.equals(key) || variables.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return Iterators.concat(variables.entrySet().iterator(), Iterators.singletonIterator(jsonBodyEntry()));
+                }
+
+                @Override
+                public int size() {
+                    return variables.size() + 1;
+                }
+            };
+        }
+
+        private Entry<String, String> jsonBodyEntry() {
+            return new Entry<String, String>() {
+                @Override
+                public String getKey() {
+                    return JSON_BODY_VARIABLE;
+                }
+
+                @Override
+                public String getValue() {
+                    return getJsonBody();
+                }
+
+                @Override
+                public String setValue(String value) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
     private static class MapWrapper<K, V> extends AbstractMap<K, V> {
 
         private final Map<K, V> map;
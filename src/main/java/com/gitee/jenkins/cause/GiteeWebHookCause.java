@@ -1,6 +1,12 @@
 package com.gitee.jenkins.cause;
 
+import hudson.model.Run;
 import hudson.triggers.SCMTrigger;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -10,6 +16,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class GiteeWebHookCause extends SCMTrigger.SCMTriggerCause {
 
+    private static final Logger LOGGER = Logger.getLogger(GiteeWebHookCause.class.getName());
+
     private final CauseData data;
 
     public GiteeWebHookCause(CauseData data) {
@@ -21,6 +29,35 @@ public class GiteeWebHookCause extends SCMTrigger.SCMTriggerCause {
         return data;
     }
 
+    @Override
+    public void onAddedTo(Run build) {
+        super.onAddedTo(build);
+        if (data.getJsonBodyHash() != null) {
+            PayloadStore.get().addReference(data.getJsonBodyHash(), build);
+        }
+    }
+
+    @Override
+    public void onLoad(final Run<?, ?> build) {
+        super.onLoad(build);
+        if (data.migrateJsonBody()) {
+            // rewrite build.xml without the inline payload once loading is done
+            Timer.get().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        build.save();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Failed to save " + build + " after moving its web hook payload", e);
+                    }
+                }
+            });
+        }
+        if (data.getJsonBodyHash() != null) {
+            PayloadStore.get().addReference(data.getJsonBodyHash(), build);
+        }
+    }
+
     @Override
     public String getShortDescription() {
         return data.getShortDescription();
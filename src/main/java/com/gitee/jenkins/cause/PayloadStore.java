@@ -0,0 +1,336 @@
+package com.gitee.jenkins.cause;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Cause;
+import hudson.model.Item;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content-addressed store of the web hook payloads under {@code JENKINS_HOME/gitee-payloads}.
+ * <p>
+ * Each payload is kept once, deflated, in a file named after the SHA-256 of its content, so builds and queue items only
+ * carry the hash. A {@code .refs} file next to it lists the builds using the payload. Payloads that no build and no
+ * queue item uses any more are deleted by a periodic sweep once they are older than a grace period, which also covers
+ * the payloads of queue items that were cancelled, merged or never built.
+ */
+public final class PayloadStore {
+
+    private static final Logger LOGGER = Logger.getLogger(PayloadStore.class.getName());
+    private static final PayloadStore INSTANCE = new PayloadStore();
+    private static final String DIRECTORY = "gitee-payloads";
+    private static final String PAYLOAD_SUFFIX = ".json.deflate";
+    private static final String REFS_SUFFIX = ".refs";
+    private static final long GRACE_PERIOD = TimeUnit.DAYS.toMillis(1);
+    private static final long SWEEP_PERIOD = TimeUnit.HOURS.toMillis(6);
+
+    private final Cache<String, String> payloads = CacheBuilder.newBuilder().maximumSize(64).softValues().build();
+    // guarded by this
+    private final Cache<String, Set<String>> references = CacheBuilder.newBuilder().maximumSize(256).build();
+
+    private PayloadStore() { }
+
+    public static PayloadStore get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the hash of the stored payload or {@code null} if it could not be stored
+     */
+    public String put(String payload) {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (payload == null || jenkins == null) {
+            return null;
+        }
+        byte[] bytes = payload.getBytes(Charsets.UTF_8);
+        String hash = Hashing.sha256().hashBytes(bytes).toString();
+        File file = getFile(hash, PAYLOAD_SUFFIX);
+        boolean exists;
+        synchronized (this) {
+            // the sweep checks the age of a payload under the lock, touching it here keeps it from being deleted
+            exists = file.exists();
+            if (exists && !file.setLastModified(System.currentTimeMillis())) {
+                LOGGER.log(Level.FINE, "Failed to touch {0}", file);
+            }
+        }
+        if (!exists) {
+            // a new file is younger than the grace period, concurrent writers of the same hash write the same content
+            try {
+                write(file, bytes);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to store web hook payload " + hash, e);
+                return null;
+            }
+        }
+        payloads.put(hash, payload);
+        return hash;
+    }
+
+    /**
+     * @return the payload or {@code null} if it is not (or no longer) stored
+     */
+    public String get(String hash) {
+        String payload = payloads.getIfPresent(hash);
+        if (payload != null || Jenkins.getInstance() == null) {
+            return payload;
+        }
+        File file = getFile(hash, PAYLOAD_SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = new InflaterInputStream(new FileInputStream(file))) {
+            payload = new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read web hook payload " + hash, e);
+            return null;
+        }
+        payloads.put(hash, payload);
+        return payload;
+    }
+
+    synchronized void addReference(String hash, Run<?, ?> build) {
+        String id = getId(build);
+        Set<String> refs = getReferences(hash);
+        if (refs.add(id)) {
+            try {
+                append(getFile(hash, REFS_SUFFIX), id + "\n");
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write references of web hook payload " + hash, e);
+            }
+        }
+    }
+
+    /**
+     * Removes the reference of the build, the payload is left to the sweep as queue items may still use it.
+     */
+    synchronized void removeReference(String hash, Run<?, ?> build) {
+        Set<String> refs = getReferences(hash);
+        if (!refs.remove(getId(build))) {
+            return;
+        }
+        if (refs.isEmpty()) {
+            references.invalidate(hash);
+            delete(getFile(hash, REFS_SUFFIX));
+        } else {
+            writeReferences(hash, refs);
+        }
+    }
+
+    /**
+     * Renames the references of the builds of a moved or renamed job or folder.
+     */
+    synchronized void renameReferences(String oldFullName, String newFullName) {
+        for (File file : listFiles(REFS_SUFFIX)) {
+            String hash = file.getName().substring(0, file.getName().length() - REFS_SUFFIX.length());
+            Set<String> refs = getReferences(hash);
+            Set<String> renamed = new LinkedHashSet<>();
+            for (String ref : refs) {
+                if (ref.startsWith(oldFullName + "#") || ref.startsWith(oldFullName + "/")) {
+                    renamed.add(newFullName + ref.substring(oldFullName.length()));
+                } else {
+                    renamed.add(ref);
+                }
+            }
+            if (!renamed.equals(refs)) {
+                refs.clear();
+                refs.addAll(renamed);
+                writeReferences(hash, refs);
+            }
+        }
+    }
+
+    /**
+     * Deletes the payloads older than the grace period that are used neither by a build nor by a queue item.
+     */
+    void sweep() {
+        Set<String> queued = new HashSet<>();
+        for (Queue.Item item : Jenkins.getInstance().getQueue().getItems()) {
+            for (Cause cause : item.getCauses()) {
+                if (cause instanceof GiteeWebHookCause && ((GiteeWebHookCause) cause).getData().getJsonBodyHash() != null) {
+                    queued.add(((GiteeWebHookCause) cause).getData().getJsonBodyHash());
+                }
+            }
+        }
+        long expired = System.currentTimeMillis() - GRACE_PERIOD;
+        int deleted = 0;
+        for (File file : listFiles(PAYLOAD_SUFFIX)) {
+            String hash = file.getName().substring(0, file.getName().length() - PAYLOAD_SUFFIX.length());
+            synchronized (this) {
+                if (file.lastModified() < expired && !queued.contains(hash) && !getFile(hash, REFS_SUFFIX).exists()) {
+                    payloads.invalidate(hash);
+                    delete(file);
+                    deleted++;
+                }
+            }
+        }
+        LOGGER.log(Level.FINE, "Deleted {0} unused web hook payloads", deleted);
+    }
+
+    private Set<String> getReferences(String hash) {
+        Set<String> refs = references.getIfPresent(hash);
+        if (refs == null) {
+            refs = new LinkedHashSet<>();
+            File file = getFile(hash, REFS_SUFFIX);
+            if (file.exists()) {
+                try {
+                    refs.addAll(Files.readLines(file, Charsets.UTF_8));
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to read references of web hook payload " + hash, e);
+                }
+            }
+            references.put(hash, refs);
+        }
+        return refs;
+    }
+
+    private void writeReferences(String hash, Set<String> refs) {
+        StringBuilder content = new StringBuilder();
+        for (String ref : refs) {
+            content.append(ref).append('\n');
+        }
+        try {
+            write(getFile(hash, REFS_SUFFIX), content.toString());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write references of web hook payload " + hash, e);
+        }
+    }
+
+    private static List<File> listFiles(String suffix) {
+        List<File> files = new ArrayList<>();
+        File[] dirs = new File(Jenkins.getInstance().getRootDir(), DIRECTORY).listFiles();
+        if (dirs == null) {
+            return files;
+        }
+        for (File dir : dirs) {
+            File[] children = dir.listFiles();
+            if (children == null) {
+                continue;
+            }
+            for (File child : children) {
+                if (child.getName().endsWith(suffix)) {
+                    files.add(child);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        File tmp = createTempFile(file);
+        try (OutputStream out = new DeflaterOutputStream(new FileOutputStream(tmp))) {
+            out.write(bytes);
+        }
+        rename(tmp, file);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        File tmp = createTempFile(file);
+        Files.write(content, tmp, Charsets.UTF_8);
+        rename(tmp, file);
+    }
+
+    private static void append(File file, String content) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        Files.append(content, file, Charsets.UTF_8);
+    }
+
+    private static File createTempFile(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        return File.createTempFile(file.getName(), ".tmp", dir);
+    }
+
+    private static void rename(File tmp, File file) throws IOException {
+        if (!tmp.renameTo(file)) {
+            delete(file);
+            if (!tmp.renameTo(file)) {
+                delete(tmp);
+                throw new IOException("Failed to rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.log(Level.WARNING, "Failed to delete {0}", file);
+        }
+    }
+
+    private static String getId(Run<?, ?> build) {
+        return build.getParent().getFullName() + "#" + build.getNumber();
+    }
+
+    private static File getFile(String hash, String suffix) {
+        File dir = new File(new File(Jenkins.getInstance().getRootDir(), DIRECTORY), hash.substring(0, 2));
+        return new File(dir, hash + suffix);
+    }
+
+    @Extension
+    public static class Listener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onDeleted(Run<?, ?> build) {
+            GiteeWebHookCause cause = build.getCause(GiteeWebHookCause.class);
+            if (cause != null && cause.getData().getJsonBodyHash() != null) {
+                INSTANCE.removeReference(cause.getData().getJsonBodyHash(), build);
+            }
+        }
+    }
+
+    @Extension
+    public static class RenameListener extends ItemListener {
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            INSTANCE.renameReferences(oldFullName, newFullName);
+        }
+    }
+
+    @Extension
+    public static class Sweeper extends AsyncPeriodicWork {
+        public Sweeper() {
+            super("Gitee payload sweeper");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return SWEEP_PERIOD;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            INSTANCE.sweep();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.gitee.jenkins.connection;
+
+import com.gitee.jenkins.gitee.api.GiteeCircuitBreaker;
+import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.gitee.api.GiteeClientBuilder;
+import com.gitee.jenkins.gitee.api.GiteeHttpPool;
+import com.gitee.jenkins.gitee.api.GiteeRateLimiter;
+import com.gitee.jenkins.gitee.api.impl.RetryingGiteeClient;
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.gitee.api.model.User;
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Clients of the Gitee connections.
+ * <p>
+ * Connections with the same URL, credentials, timeouts, client builder and HTTP pool settings share one client,
+ * together with its rate limiter, circuit breaker and HTTP pool. A connection acquires the client on first use and
+ * releases it when it is replaced by a reconfiguration. The HTTP pool is shut down once the last connection using it
+ * released it and the last call still running on it returned. A client is rebuilt with the current token when its credentials change, see
+ * {@link GiteeCredentialsCache}.
+ */
+public final class GiteeClientRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(GiteeClientRegistry.class.getName());
+    private static final GiteeClientRegistry INSTANCE = new GiteeClientRegistry();
+
+    private final Map<Key, ManagedClient> clients = new HashMap<>();
+
+    private GiteeClientRegistry() {}
+
+    public static GiteeClientRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the number of distinct clients in use
+     */
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    synchronized ManagedClient acquire(GiteeConnection connection) {
+        Key key = new Key(connection);
+        ManagedClient client = clients.get(key);
+        if (client == null) {
+            client = new ManagedClient(key, connection.getClientBuilder());
+            clients.put(key, client);
+        }
+        client.references++;
+        return client;
+    }
+
+    synchronized void release(ManagedClient client) {
+        if (--client.references == 0) {
+            clients.remove(client.key);
+            LOGGER.log(Level.FINE, "Closing the Gitee client of {0}", client.key.url);
+            client.close();
+        }
+    }
+
+    /**
+     * Drops the clients built with the given credentials, they are built again with the current token on their next call.
+     */
+    synchronized void invalidate(String apiTokenId) {
+        for (ManagedClient client : clients.values()) {
+            if (client.key.apiTokenId != null && client.key.apiTokenId.equals(apiTokenId)) {
+                client.reset();
+            }
+        }
+    }
+
+    static final class ManagedClient {
+        private final Key key;
+        private final GiteeClientBuilder clientBuilder;
+        private final GiteeRateLimiter rateLimiter;
+        private final GiteeCircuitBreaker circuitBreaker;
+        private final GiteeHttpPool httpPool;
+        private final GiteeClient client;
+        private volatile GiteeClient builtClient;
+        private boolean closed;
+        private boolean shutdown;
+        private int calls;
+        // guarded by the registry
+        private int references;
+
+        private ManagedClient(Key key, GiteeClientBuilder clientBuilder) {
+            this.key = key;
+            this.clientBuilder = clientBuilder;
+            this.rateLimiter = new GiteeRateLimiter(key.url);
+            this.circuitBreaker = new GiteeCircuitBreaker(key.url);
+            this.httpPool = new GiteeHttpPool(key.maxConnections, key.maxConnectionsPerRoute, key.keepAlive);
+            this.client = new RetryingGiteeClient(new RebuildableClient(), rateLimiter);
+        }
+
+        /**
+         * @return the client, it keeps working when the client is rebuilt for a new token
+         */
+        GiteeClient getClient() {
+            return client;
+        }
+
+        GiteeRateLimiter getRateLimiter() {
+            return rateLimiter;
+        }
+
+        GiteeCircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        GiteeHttpPool getHttpPool() {
+            return httpPool;
+        }
+
+        int getReferences() {
+            synchronized (INSTANCE) {
+                return references;
+            }
+        }
+
+        private GiteeClient getBuiltClient() {
+            GiteeClient result = builtClient;
+            if (result == null) {
+                synchronized (this) {
+                    if (shutdown) {
+                        throw new IllegalStateException("The Gitee client of " + key.url + " has been closed");
+                    }
+                    result = builtClient;
+                    if (result == null) {
+                        result = clientBuilder.buildClient(key.url, GiteeCredentialsCache.get().getApiToken(key.apiTokenId),
+                                                           key.ignoreCertificateErrors, key.connectionTimeout, key.readTimeout,
+                                                           rateLimiter, circuitBreaker, httpPool);
+                        builtClient = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private synchronized void reset() {
+            // the HTTP pool is kept, the next client is built on the same connections
+            builtClient = null;
+        }
+
+        /**
+         * Shuts the HTTP pool down, right away if no call is running on it, otherwise when the last call returned.
+         */
+        private synchronized void close() {
+            closed = true;
+            if (calls == 0) {
+                shutdown();
+            }
+        }
+
+        private GiteeClient lease() {
+            synchronized (this) {
+                if (shutdown) {
+                    throw new IllegalStateException("The Gitee client of " + key.url + " has been closed");
+                }
+                calls++;
+            }
+            try {
+                return getBuiltClient();
+            } catch (RuntimeException e) {
+                returnLease();
+                throw e;
+            }
+        }
+
+        private synchronized void returnLease() {
+            if (--calls == 0 && closed) {
+                shutdown();
+            }
+        }
+
+        private synchronized void shutdown() {
+            shutdown = true;
+            builtClient = null;
+            httpPool.shutdown();
+        }
+
+        private final class RebuildableClient implements GiteeClient {
+            @Override
+            public String getHostUrl() {
+                return key.url;
+            }
+
+            @Override
+            public void acceptPullRequest(PullRequest mr, String mergeCommitMessage, boolean shouldRemoveSourceBranch) {
+                GiteeClient client = lease();
+                try {
+                    client.acceptPullRequest(mr, mergeCommitMessage, shouldRemoveSourceBranch);
+                } finally {
+                    returnLease();
+                }
+            }
+
+            @Override
+            public void createPullRequestNote(PullRequest mr, String body) {
+                GiteeClient client = lease();
+                try {
+                    client.createPullRequestNote(mr, body);
+                } finally {
+                    returnLease();
+                }
+            }
+
+            @Override
+            public User getCurrentUser() {
+                GiteeClient client = lease();
+                try {
+                    return client.getCurrentUser();
+                } finally {
+                    returnLease();
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String url;
+        private final String apiTokenId;
+        private final String clientBuilderId;
+        private final boolean ignoreCertificateErrors;
+        private final int connectionTimeout;
+        private final int readTimeout;
+        private final int maxConnections;
+        private final int maxConnectionsPerRoute;
+        private final int keepAlive;
+
+        private Key(GiteeConnection connection) {
+            url = connection.getUrl();
+            apiTokenId = connection.getApiTokenId();
+            clientBuilderId = connection.getClientBuilderId();
+            ignoreCertificateErrors = connection.isIgnoreCertificateErrors();
+            connectionTimeout = connection.getConnectionTimeout();
+            readTimeout = connection.getReadTimeout();
+            maxConnections = connection.getMaxConnections();
+            maxConnectionsPerRoute = connection.getMaxConnectionsPerRoute();
+            keepAlive = connection.getKeepAlive();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return new EqualsBuilder()
+                .append(url, key.url)
+                .append(apiTokenId, key.apiTokenId)
+                .append(clientBuilderId, key.clientBuilderId)
+                .append(ignoreCertificateErrors, key.ignoreCertificateErrors)
+                .append(connectionTimeout, key.connectionTimeout)
+                .append(readTimeout, key.readTimeout)
+                .append(maxConnections, key.maxConnections)
+                .append(maxConnectionsPerRoute, key.maxConnectionsPerRoute)
+                .append(keepAlive, key.keepAlive)
+                .isEquals();
+        }
+
+        @Override
+        public int hashCode() {
+            return new HashCodeBuilder(17, 37)
+                .append(url)
+                .append(apiTokenId)
+                .append(clientBuilderId)
+                .append(ignoreCertificateErrors)
+                .append(connectionTimeout)
+                .append(readTimeout)
+                .append(maxConnections)
+                .append(maxConnectionsPerRoute)
+                .append(keepAlive)
+                .toHashCode();
+        }
+    }
+}
@@ -1,34 +1,41 @@
 package com.gitee.jenkins.connection;
 
 
-import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.CredentialsScope;
 import com.cloudbees.plugins.credentials.CredentialsStore;
 import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
-import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.domains.Domain;
-import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.gitee.jenkins.gitee.api.AsyncGiteeClient;
+import com.gitee.jenkins.gitee.api.GiteeCircuitBreaker;
 import com.gitee.jenkins.gitee.api.GiteeClient;
 import com.gitee.jenkins.gitee.api.GiteeClientBuilder;
+import com.gitee.jenkins.gitee.api.GiteeHttpPool;
+import com.gitee.jenkins.gitee.api.GiteeRateLimiter;
+import com.gitee.jenkins.gitee.api.impl.CoalescingGiteeClient;
+import com.gitee.jenkins.gitee.api.impl.ExecutorAsyncGiteeClient;
 import com.gitee.jenkins.gitee.api.impl.GiteeV5ClientBuilder;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import hudson.init.InitMilestone;
 import hudson.init.Initializer;
-import hudson.model.Item;
-import hudson.security.ACL;
 import hudson.util.Secret;
 import jenkins.model.Jenkins;
-import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+import jenkins.util.Timer;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import static com.cloudbees.plugins.credentials.CredentialsProvider.lookupCredentials;
 import static com.gitee.jenkins.gitee.api.GiteeClientBuilder.getGiteeClientBuilderById;
 
 
@@ -36,6 +43,13 @@ import static com.gitee.jenkins.gitee.api.GiteeClientBuilder.getGiteeClientBuild
  * @author Robin Müller
  */
 public class GiteeConnection {
+    private static final Logger LOGGER = Logger.getLogger(GiteeConnection.class.getName());
+    private static final int ASYNC_THREADS = 4;
+    private static final int ASYNC_QUEUE_CAPACITY = 100;
+    private static final int DRAIN_TIMEOUT_MINUTES = 5;
+    public static final int DEFAULT_NOTE_COALESCING_MAX_DELAY = 30;
+    public static final int DEFAULT_TIMEOUT = 10;
+
     private final String name;
     private final String url;
     private transient String apiToken;
@@ -45,7 +59,15 @@ public class GiteeConnection {
     private final boolean ignoreCertificateErrors;
     private final Integer connectionTimeout;
     private final Integer readTimeout;
-    private transient GiteeClient apiCache;
+    private int noteCoalescingWindow;
+    private Integer noteCoalescingMaxDelay;
+    private Integer maxConnections;
+    private Integer maxConnectionsPerRoute;
+    private Integer keepAlive;
+    private transient volatile GiteeClient apiCache;
+    private transient ExecutorAsyncGiteeClient asyncApiCache;
+    private transient ListeningExecutorService executor;
+    private transient GiteeClientRegistry.ManagedClient managedClient;
 
     public GiteeConnection(String name, String url, String apiTokenId, boolean ignoreCertificateErrors, Integer connectionTimeout, Integer readTimeout) {
         this(
@@ -104,46 +126,195 @@ public class GiteeConnection {
     }
 
     public int getConnectionTimeout() {
-        return connectionTimeout;
+        return connectionTimeout == null ? DEFAULT_TIMEOUT : connectionTimeout;
     }
 
     public int getReadTimeout() {
-        return readTimeout;
+        return readTimeout == null ? DEFAULT_TIMEOUT : readTimeout;
+    }
+
+    /**
+     * @return the seconds notes on the same pull request are buffered to be posted as one comment, 0 if they are not
+     */
+    public int getNoteCoalescingWindow() {
+        return noteCoalescingWindow;
+    }
+
+    @DataBoundSetter
+    public void setNoteCoalescingWindow(int noteCoalescingWindow) {
+        this.noteCoalescingWindow = Math.max(0, noteCoalescingWindow);
+    }
+
+    public int getNoteCoalescingMaxDelay() {
+        return noteCoalescingMaxDelay == null ? DEFAULT_NOTE_COALESCING_MAX_DELAY : noteCoalescingMaxDelay;
+    }
+
+    @DataBoundSetter
+    public void setNoteCoalescingMaxDelay(int noteCoalescingMaxDelay) {
+        this.noteCoalescingMaxDelay = Math.max(0, noteCoalescingMaxDelay);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections == null ? GiteeHttpPool.DEFAULT_MAX_CONNECTIONS : maxConnections;
+    }
+
+    @DataBoundSetter
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute == null ? GiteeHttpPool.DEFAULT_MAX_CONNECTIONS_PER_ROUTE : maxConnectionsPerRoute;
+    }
+
+    @DataBoundSetter
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = Math.max(1, maxConnectionsPerRoute);
+    }
+
+    /**
+     * @return the seconds an idle HTTP connection is kept open for further calls
+     */
+    public int getKeepAlive() {
+        return keepAlive == null ? GiteeHttpPool.DEFAULT_KEEP_ALIVE : keepAlive;
+    }
+
+    @DataBoundSetter
+    public void setKeepAlive(int keepAlive) {
+        this.keepAlive = Math.max(1, keepAlive);
     }
 
     public GiteeClient getClient() {
-        if (apiCache == null) {
-            apiCache = clientBuilder.buildClient(url, getApiToken(apiTokenId), ignoreCertificateErrors, connectionTimeout, readTimeout);
+        GiteeClient client = apiCache;
+        if (client == null) {
+            synchronized (this) {
+                client = apiCache;
+                if (client == null) {
+                    client = getManagedClient().getClient();
+                    if (noteCoalescingWindow > 0) {
+                        client = new CoalescingGiteeClient(client, noteCoalescingWindow, getNoteCoalescingMaxDelay(), getExecutor());
+                    }
+                    apiCache = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * @return the token bucket shared by all calls through this connection
+     */
+    public GiteeRateLimiter getRateLimiter() {
+        return getManagedClient().getRateLimiter();
+    }
+
+    /**
+     * @return the circuit breaker failing the calls through this connection fast while Gitee is unavailable
+     */
+    public GiteeCircuitBreaker getCircuitBreaker() {
+        return getManagedClient().getCircuitBreaker();
+    }
+
+    public GiteeHttpPool getHttpPool() {
+        return getManagedClient().getHttpPool();
+    }
+
+    /**
+     * @return the number of connections sharing the client of this connection
+     */
+    public int getClientReferences() {
+        return getManagedClient().getReferences();
+    }
+
+    public synchronized AsyncGiteeClient getAsyncClient() {
+        if (asyncApiCache == null) {
+            asyncApiCache = new ExecutorAsyncGiteeClient(getClient(), getExecutor());
         }
+        return asyncApiCache;
+    }
 
-        return apiCache;
+    private synchronized ListeningExecutorService getExecutor() {
+        if (executor == null) {
+            executor = ExecutorAsyncGiteeClient.newExecutor(name, ASYNC_THREADS, ASYNC_QUEUE_CAPACITY);
+        }
+        return executor;
     }
 
-    private String getApiToken(String apiTokenId) {
-        StandardCredentials credentials = CredentialsMatchers.firstOrNull(
-            lookupCredentials(StandardCredentials.class, (Item) null, ACL.SYSTEM, new ArrayList<DomainRequirement>()),
-            CredentialsMatchers.withId(apiTokenId));
-        if (credentials != null) {
-            if (credentials instanceof GiteeApiToken) {
-                return ((GiteeApiToken) credentials).getApiToken().getPlainText();
+    /**
+     * Releases the client of this connection once the buffered notes and the pending asynchronous calls have been
+     * made, its HTTP pool is shut down unless another connection still uses it. The connection must not be used
+     * afterwards.
+     */
+    public synchronized void close() {
+        final GiteeClient client = apiCache;
+        final ListeningExecutorService pending = executor;
+        final GiteeClientRegistry.ManagedClient released = managedClient;
+        apiCache = null;
+        asyncApiCache = null;
+        executor = null;
+        managedClient = null;
+        if (released == null) {
+            return;
+        }
+        Timer.get().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    drain(client, pending);
+                } finally {
+                    GiteeClientRegistry.get().release(released);
+                }
+            }
+        });
+    }
+
+    private void drain(GiteeClient client, ExecutorService pending) {
+        try {
+            if (client instanceof CoalescingGiteeClient) {
+                // the batches are posted on the executor, so it is shut down afterwards
+                ((CoalescingGiteeClient) client).flush().get(DRAIN_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            }
+            if (pending != null) {
+                pending.shutdown();
+                if (!pending.awaitTermination(DRAIN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                    LOGGER.log(Level.WARNING, "Pending Gitee API calls of connection {0} did not complete in time", name);
+                }
             }
-            if (credentials instanceof StringCredentials) {
-                return ((StringCredentials) credentials).getSecret().getPlainText();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.WARNING, "Failed to post the buffered notes of connection " + name, e);
+        } finally {
+            if (pending != null) {
+                pending.shutdown();
             }
         }
-        throw new IllegalStateException("No credentials found for credentialsId: " + apiTokenId);
     }
 
+    synchronized GiteeClientRegistry.ManagedClient getManagedClient() {
+        if (managedClient == null) {
+            managedClient = GiteeClientRegistry.get().acquire(this);
+        }
+        return managedClient;
+    }
+
+    GiteeClientBuilder getClientBuilder() {
+        return clientBuilder;
+    }
 
     protected GiteeConnection readResolve() {
+        GiteeConnection connection = this;
         if (connectionTimeout == null || readTimeout == null) {
-            return new GiteeConnection(name, url, apiTokenId, new GiteeV5ClientBuilder(), ignoreCertificateErrors, 10, 10);
-        }
-        if (clientBuilder == null) {
-            return new GiteeConnection(name, url, apiTokenId, new GiteeV5ClientBuilder(), ignoreCertificateErrors, connectionTimeout, readTimeout);
+            connection = new GiteeConnection(name, url, apiTokenId, new GiteeV5ClientBuilder(), ignoreCertificateErrors, getConnectionTimeout(), getReadTimeout());
+        } else if (clientBuilder == null) {
+            connection = new GiteeConnection(name, url, apiTokenId, new GiteeV5ClientBuilder(), ignoreCertificateErrors, connectionTimeout, readTimeout);
         }
-
-        return this;
+        connection.noteCoalescingWindow = noteCoalescingWindow;
+        connection.noteCoalescingMaxDelay = noteCoalescingMaxDelay;
+        connection.maxConnections = maxConnections;
+        connection.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        connection.keepAlive = keepAlive;
+        return connection;
     }
 
     @Initializer(after = InitMilestone.PLUGINS_STARTED)
@@ -7,8 +7,12 @@ import com.cloudbees.plugins.credentials.common.AbstractIdCredentialsListBoxMode
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import com.gitee.jenkins.gitee.api.AsyncGiteeClient;
 import com.gitee.jenkins.gitee.api.GiteeClient;
 import com.gitee.jenkins.gitee.api.GiteeClientBuilder;
+import com.gitee.jenkins.webhook.PathRoutingTable;
+import com.gitee.jenkins.webhook.WebHookDeduplicator;
+import com.gitee.jenkins.webhook.WebHookQueue;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Item;
@@ -26,9 +30,14 @@ import org.kohsuke.stapler.StaplerRequest;
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static com.gitee.jenkins.gitee.api.GiteeClientBuilder.getAllGiteeClientBuilders;
 
@@ -39,20 +48,38 @@ import static com.gitee.jenkins.gitee.api.GiteeClientBuilder.getAllGiteeClientBu
 @Extension
 public class GiteeConnectionConfig extends GlobalConfiguration {
 
+    private static final Logger LOGGER = Logger.getLogger(GiteeConnectionConfig.class.getName());
+
     private Boolean useAuthenticatedEndpoint = true;
     private List<GiteeConnection> connections = new ArrayList<>();
+    private boolean asyncWebHookIngestion = false;
+    private Integer webHookQueueCapacity;
+    private Integer webHookWorkerThreads;
+    private Integer webHookDeduplicationWindow;
+    private String pathRoutes;
     private transient Map<String, GiteeConnection> connectionMap = new HashMap<>();
 
     public GiteeConnectionConfig() {
         load();
         refreshConnectionMap();
+        refreshWebHookQueue();
+        refreshPathRoutes();
     }
 
     @Override
     public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        List<GiteeConnection> oldConnections = connections;
         connections = req.bindJSONToList(GiteeConnection.class, json.get("connections"));
 //        useAuthenticatedEndpoint = json.getBoolean("useAuthenticatedEndpoint");
+        asyncWebHookIngestion = json.optBoolean("asyncWebHookIngestion", false);
+        webHookQueueCapacity = json.optInt("webHookQueueCapacity", WebHookQueue.DEFAULT_CAPACITY);
+        webHookWorkerThreads = json.optInt("webHookWorkerThreads", WebHookQueue.DEFAULT_WORKER_THREADS);
+        webHookDeduplicationWindow = json.optInt("webHookDeduplicationWindow", WebHookDeduplicator.DEFAULT_WINDOW_SECONDS);
+        pathRoutes = json.optString("pathRoutes", null);
         refreshConnectionMap();
+        closeConnections(oldConnections);
+        refreshWebHookQueue();
+        refreshPathRoutes();
         save();
         return super.configure(req, json);
     }
@@ -65,6 +92,26 @@ public class GiteeConnectionConfig extends GlobalConfiguration {
         this.useAuthenticatedEndpoint = useAuthenticatedEndpoint;
     }
 
+    public boolean isAsyncWebHookIngestion() {
+        return asyncWebHookIngestion;
+    }
+
+    public int getWebHookQueueCapacity() {
+        return webHookQueueCapacity == null ? WebHookQueue.DEFAULT_CAPACITY : webHookQueueCapacity;
+    }
+
+    public int getWebHookWorkerThreads() {
+        return webHookWorkerThreads == null ? WebHookQueue.DEFAULT_WORKER_THREADS : webHookWorkerThreads;
+    }
+
+    public int getWebHookDeduplicationWindow() {
+        return webHookDeduplicationWindow == null ? WebHookDeduplicator.DEFAULT_WINDOW_SECONDS : webHookDeduplicationWindow;
+    }
+
+    public String getPathRoutes() {
+        return pathRoutes;
+    }
+
     public List<GiteeConnection> getConnections() {
         return connections;
     }
@@ -75,11 +122,13 @@ public class GiteeConnectionConfig extends GlobalConfiguration {
     }
 
     public void setConnections(List<GiteeConnection> newConnections) {
+        List<GiteeConnection> oldConnections = connections;
         connections = new ArrayList<>();
         connectionMap = new HashMap<>();
         for (GiteeConnection connection: newConnections){
             addConnection(connection);
         }
+        closeConnections(oldConnections);
     }
 
     public GiteeClient getClient(String connectionName) {
@@ -89,6 +138,13 @@ public class GiteeConnectionConfig extends GlobalConfiguration {
         return connectionMap.get(connectionName).getClient();
     }
 
+    public AsyncGiteeClient getAsyncClient(String connectionName) {
+        if (!connectionMap.containsKey(connectionName)) {
+            return null;
+        }
+        return connectionMap.get(connectionName).getAsyncClient();
+    }
+
     public FormValidation doCheckName(@QueryParameter String id, @QueryParameter String value) {
         if (StringUtils.isEmptyOrNull(value)) {
             return FormValidation.error(Messages.name_required());
@@ -123,6 +179,39 @@ public class GiteeConnectionConfig extends GlobalConfiguration {
         }
     }
 
+    public FormValidation doCheckWebHookQueueCapacity(@QueryParameter Integer value) {
+        return checkPositive(value);
+    }
+
+    public FormValidation doCheckWebHookWorkerThreads(@QueryParameter Integer value) {
+        return checkPositive(value);
+    }
+
+    public FormValidation doCheckWebHookDeduplicationWindow(@QueryParameter Integer value) {
+        if (value == null || value < 0) {
+            return FormValidation.error(Messages.nonNegativeNumber_required());
+        } else {
+            return FormValidation.ok();
+        }
+    }
+
+    public FormValidation doCheckPathRoutes(@QueryParameter String value) {
+        try {
+            PathRoutingTable.parse(value);
+            return FormValidation.ok();
+        } catch (IllegalArgumentException e) {
+            return FormValidation.error(Messages.pathRoute_invalid(e.getMessage()));
+        }
+    }
+
+    private FormValidation checkPositive(Integer value) {
+        if (value == null || value < 1) {
+            return FormValidation.error(Messages.positiveNumber_required());
+        } else {
+            return FormValidation.ok();
+        }
+    }
+
     public FormValidation doCheckReadTimeout(@QueryParameter Integer value) {
         if (value == null) {
             return FormValidation.error(Messages.readTimeout_required());
@@ -142,7 +231,12 @@ public class GiteeConnectionConfig extends GlobalConfiguration {
                 clientBuilderId  = "v5";
             }
 
-            new GiteeConnection("", url, apiTokenId, clientBuilderId, ignoreCertificateErrors, connectionTimeout, readTimeout).getClient().getCurrentUser();
+            GiteeConnection connection = new GiteeConnection("", url, apiTokenId, clientBuilderId, ignoreCertificateErrors, connectionTimeout, readTimeout);
+            try {
+                connection.getClient().getCurrentUser();
+            } finally {
+                connection.close();
+            }
             return FormValidation.ok(Messages.connection_success());
         } catch (WebApplicationException e) {
             return FormValidation.error(Messages.connection_error(e.getMessage()));
@@ -190,6 +284,37 @@ public class GiteeConnectionConfig extends GlobalConfiguration {
         }
     }
 
+    /**
+     * Closes the replaced connections once the new ones hold their clients, so that a client shared with an unchanged
+     * connection is kept and only the clients no longer used are shut down.
+     */
+    private void closeConnections(List<GiteeConnection> oldConnections) {
+        Set<GiteeConnection> retained = Collections.newSetFromMap(new IdentityHashMap<GiteeConnection, Boolean>());
+        for (GiteeConnection connection : connections) {
+            connection.getManagedClient();
+            retained.add(connection);
+        }
+        for (GiteeConnection connection : oldConnections) {
+            if (!retained.contains(connection)) {
+                connection.close();
+            }
+        }
+    }
+
+    private void refreshWebHookQueue() {
+        WebHookQueue.get().configure(getWebHookQueueCapacity(), getWebHookWorkerThreads());
+        WebHookDeduplicator.get().setWindowSeconds(getWebHookDeduplicationWindow());
+    }
+
+    private void refreshPathRoutes() {
+        try {
+            PathRoutingTable.configure(pathRoutes);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Ignoring invalid path routes, line: {0}", e.getMessage());
+            PathRoutingTable.configure(null);
+        }
+    }
+
     private static class GiteeCredentialMatcher implements CredentialsMatcher {
         @Override
         public boolean matches(@NonNull Credentials credentials) {
@@ -1,6 +1,7 @@
 package com.gitee.jenkins.connection;
 
 
+import com.gitee.jenkins.gitee.api.AsyncGiteeClient;
 import com.gitee.jenkins.gitee.api.GiteeClient;
 import hudson.Extension;
 import hudson.model.Job;
@@ -39,6 +40,14 @@ public class GiteeConnectionProperty extends JobProperty<Job<?, ?>> {
         return null;
     }
 
+    public AsyncGiteeClient getAsyncClient() {
+        if (StringUtils.isNotEmpty(giteeConnection)) {
+            GiteeConnectionConfig connectionConfig = (GiteeConnectionConfig) Jenkins.getInstance().getDescriptor(GiteeConnectionConfig.class);
+            return connectionConfig != null ? connectionConfig.getAsyncClient(giteeConnection) : null;
+        }
+        return null;
+    }
+
     public static GiteeClient getClient(Run<?, ?> build) {
         final GiteeConnectionProperty connectionProperty = build.getParent().getProperty(GiteeConnectionProperty.class);
         if (connectionProperty != null) {
@@ -55,6 +64,14 @@ public class GiteeConnectionProperty extends JobProperty<Job<?, ?>> {
         return null;
     }
 
+    public static AsyncGiteeClient getAsyncClient(Job<?, ?> job) {
+        final GiteeConnectionProperty connectionProperty = job.getProperty(GiteeConnectionProperty.class);
+        if (connectionProperty != null) {
+            return connectionProperty.getAsyncClient();
+        }
+        return null;
+    }
+
 
     @Extension
     @Symbol("giteeConnection")
@@ -0,0 +1,112 @@
+package com.gitee.jenkins.connection;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.cloudbees.plugins.credentials.CredentialsProvider.lookupCredentials;
+
+/**
+ * API tokens of the Gitee connections by credentials id.
+ * <p>
+ * Resolving a token searches all system credentials, so resolved tokens are cached. Whenever the system credentials
+ * are saved the cached tokens are resolved again in the background, and the clients of the tokens that changed are
+ * rebuilt on their next call.
+ */
+public final class GiteeCredentialsCache {
+
+    private static final Logger LOGGER = Logger.getLogger(GiteeCredentialsCache.class.getName());
+    private static final GiteeCredentialsCache INSTANCE = new GiteeCredentialsCache();
+
+    private final ConcurrentMap<String, String> tokens = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private GiteeCredentialsCache() {}
+
+    public static GiteeCredentialsCache get() {
+        return INSTANCE;
+    }
+
+    public String getApiToken(String apiTokenId) {
+        String token = tokens.get(apiTokenId);
+        if (token == null) {
+            token = lookupApiToken(apiTokenId);
+            if (token == null) {
+                throw new IllegalStateException("No credentials found for credentialsId: " + apiTokenId);
+            }
+            tokens.put(apiTokenId, token);
+        }
+        return token;
+    }
+
+    /**
+     * Resolves the cached tokens again, the clients of the changed or removed tokens are rebuilt on their next call.
+     */
+    public void refresh() {
+        for (Map.Entry<String, String> entry : tokens.entrySet()) {
+            String apiTokenId = entry.getKey();
+            if (!entry.getValue().equals(lookupApiToken(apiTokenId))) {
+                tokens.remove(apiTokenId, entry.getValue());
+                LOGGER.log(Level.INFO, "Credentials {0} of Gitee connections changed, rebuilding their clients", apiTokenId);
+                GiteeClientRegistry.get().invalidate(apiTokenId);
+            }
+        }
+    }
+
+    private void scheduleRefresh() {
+        if (tokens.isEmpty() || !refreshScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Timer.get().submit(new Runnable() {
+            @Override
+            public void run() {
+                refreshScheduled.set(false);
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to refresh the credentials of Gitee connections", e);
+                }
+            }
+        });
+    }
+
+    private static String lookupApiToken(String apiTokenId) {
+        StandardCredentials credentials = CredentialsMatchers.firstOrNull(
+            lookupCredentials(StandardCredentials.class, (Item) null, ACL.SYSTEM, new ArrayList<DomainRequirement>()),
+            CredentialsMatchers.withId(apiTokenId));
+        if (credentials instanceof GiteeApiToken) {
+            return ((GiteeApiToken) credentials).getApiToken().getPlainText();
+        }
+        if (credentials instanceof StringCredentials) {
+            return ((StringCredentials) credentials).getSecret().getPlainText();
+        }
+        return null;
+    }
+
+    @Extension
+    public static class CredentialsSaveableListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider) {
+                INSTANCE.scheduleRefresh();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.gitee.jenkins.diagnostics;
+
+import com.gitee.jenkins.cause.CauseData;
+import com.gitee.jenkins.connection.GiteeConnection;
+import com.gitee.jenkins.connection.GiteeConnectionConfig;
+import com.gitee.jenkins.environment.GiteeEnvironmentContributor;
+import com.gitee.jenkins.trigger.handler.QueuedBuildIndex;
+import com.gitee.jenkins.util.RunningBuildIndex;
+import com.gitee.jenkins.webhook.PathRoutingTable;
+import com.gitee.jenkins.webhook.RepositoryIndex;
+import com.gitee.jenkins.webhook.WebHookDeduplicator;
+import com.gitee.jenkins.webhook.WebHookQueue;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the runtime state of the plugin (web hook queue, caches, ...) on the "Manage Jenkins" page.
+ */
+@Extension
+public class GiteeDiagnosticsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/gitee/images/24x24/gitlab.png";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "gitee-diagnostics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.GiteeDiagnosticsLink_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.GiteeDiagnosticsLink_Description();
+    }
+
+    public WebHookQueue getWebHookQueue() {
+        return WebHookQueue.get();
+    }
+
+    public WebHookDeduplicator getWebHookDeduplicator() {
+        return WebHookDeduplicator.get();
+    }
+
+    public RepositoryIndex getRepositoryIndex() {
+        return RepositoryIndex.get();
+    }
+
+    public long getEnvironmentContributionCount() {
+        return GiteeEnvironmentContributor.getContributionCount();
+    }
+
+    public long getBuildVariablesComputedCount() {
+        return CauseData.getBuildVariablesComputedCount();
+    }
+
+    public PathRoutingTable getPathRoutingTable() {
+        return PathRoutingTable.get();
+    }
+
+    public QueuedBuildIndex getQueuedBuildIndex() {
+        return QueuedBuildIndex.get();
+    }
+
+    public RunningBuildIndex getRunningBuildIndex() {
+        return RunningBuildIndex.get();
+    }
+
+    public List<GiteeConnection> getConnections() {
+        GiteeConnectionConfig connectionConfig = (GiteeConnectionConfig) Jenkins.getInstance().getDescriptor(GiteeConnectionConfig.class);
+        return connectionConfig == null ? Collections.<GiteeConnection>emptyList() : connectionConfig.getConnections();
+    }
+}
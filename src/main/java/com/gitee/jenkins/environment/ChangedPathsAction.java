@@ -0,0 +1,64 @@
+package com.gitee.jenkins.environment;
+
+import com.google.common.base.Joiner;
+import hudson.model.InvisibleAction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Remembers the files changed by the push that triggered a build, exposed to the build for incremental builds as the
+ * {@code giteeChangedPaths} variable.
+ * <p>
+ * The variable holds at most {@link #MAX_VARIABLE_LENGTH} characters, a push changing more files would exceed the
+ * limits of the environment of a process. Only the paths that fit into it are kept, so that they do not bloat the
+ * record of the build.
+ */
+public class ChangedPathsAction extends InvisibleAction {
+
+    public static final String VARIABLE = "giteeChangedPaths";
+    public static final int MAX_VARIABLE_LENGTH = 16 * 1024;
+
+    private final List<String> paths;
+
+    public ChangedPathsAction(Collection<String> paths) {
+        List<String> kept = new ArrayList<>();
+        int length = 0;
+        for (String path : new TreeSet<>(paths)) {
+            length += kept.isEmpty() ? path.length() : 1 + path.length();
+            if (length > MAX_VARIABLE_LENGTH) {
+                break;
+            }
+            kept.add(path);
+        }
+        this.paths = kept;
+    }
+
+    /**
+     * @return the first paths in sorted order, without the ones following the last one that fits into
+     *         {@link #MAX_VARIABLE_LENGTH} characters
+     */
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * @return the paths changed by this push or the other one, for a build that merges both
+     */
+    public ChangedPathsAction merge(ChangedPathsAction other) {
+        // a path missing from both lists sorts after all paths they kept, so it would not fit into the merged one either
+        List<String> merged = new ArrayList<>(paths);
+        merged.addAll(other.paths);
+        return new ChangedPathsAction(merged);
+    }
+
+    /**
+     * @return the comma separated paths
+     */
+    public String getVariableValue() {
+        return Joiner.on(',').join(paths);
+    }
+}
@@ -11,25 +11,43 @@ import hudson.model.TaskListener;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Robin Müller
  */
 @Extension
 public class GiteeEnvironmentContributor extends EnvironmentContributor {
+
+    private static final AtomicLong CONTRIBUTIONS = new AtomicLong();
+
+    /**
+     * @return how often the environment of a run has been asked for since start up
+     */
+    public static long getContributionCount() {
+        return CONTRIBUTIONS.get();
+    }
+
     @Override
     public void buildEnvironmentFor(@Nonnull Run r, @Nonnull EnvVars envs, @Nonnull TaskListener listener) throws IOException, InterruptedException {
+        CONTRIBUTIONS.incrementAndGet();
         GiteeWebHookCause cause = null;
+        ChangedPathsAction changedPaths = null;
         if (r instanceof MatrixRun) {
             MatrixBuild parent = ((MatrixRun)r).getParentBuild();
             if (parent != null) {
                 cause = (GiteeWebHookCause) parent.getCause(GiteeWebHookCause.class);
+                changedPaths = parent.getAction(ChangedPathsAction.class);
             }
         } else {
             cause = (GiteeWebHookCause) r.getCause(GiteeWebHookCause.class);
+            changedPaths = r.getAction(ChangedPathsAction.class);
         }
         if (cause != null) {
             envs.overrideAll(cause.getData().getBuildVariables());
         }
+        if (changedPaths != null) {
+            envs.override(ChangedPathsAction.VARIABLE, changedPaths.getVariableValue());
+        }
     }
 }
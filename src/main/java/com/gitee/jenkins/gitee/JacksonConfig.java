@@ -1,8 +1,7 @@
 package com.gitee.jenkins.gitee;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.gitee.jenkins.util.JsonUtil;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -11,6 +10,8 @@ import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Provider;
 
 /**
+ * Supplies the mapper shared with the web hooks to the Gitee clients.
+ *
  * @author Robin Müller
  */
 @Provider
@@ -18,9 +19,6 @@ import javax.ws.rs.ext.Provider;
 @Produces(MediaType.APPLICATION_JSON)
 public class JacksonConfig implements ContextResolver<ObjectMapper> {
     public ObjectMapper getContext(Class<?> type) {
-        return new ObjectMapper()
-                .setPropertyNamingStrategy(PropertyNamingStrategy.CAMEL_CASE_TO_LOWER_CASE_WITH_UNDERSCORES)
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                .configure(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL, true);
+        return JsonUtil.getObjectMapper();
     }
 }
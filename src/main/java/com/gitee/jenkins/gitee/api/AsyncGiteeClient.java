@@ -0,0 +1,24 @@
+package com.gitee.jenkins.gitee.api;
+
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.gitee.api.model.User;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Non-blocking variant of {@link GiteeClient}, the calls are run on a bounded pool of the connection.
+ */
+public interface AsyncGiteeClient {
+    String getHostUrl();
+
+    ListenableFuture<Void> acceptPullRequest(PullRequest mr, String mergeCommitMessage, boolean shouldRemoveSourceBranch);
+
+    ListenableFuture<Void> createPullRequestNote(PullRequest mr, String body);
+
+    /**
+     * @return whether notes on the same pull request are posted in the order of the calls, even if a call is made
+     *         before the previous one completed
+     */
+    boolean isOrderingNotes();
+
+    ListenableFuture<User> getCurrentUser();
+}
@@ -0,0 +1,120 @@
+package com.gitee.jenkins.gitee.api;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Circuit breaker of a Gitee connection.
+ * <p>
+ * After {@link #FAILURE_THRESHOLD} consecutive failed calls (connection failures, timeouts, server errors) the circuit
+ * opens and calls fail fast instead of waiting for their timeouts. Once the open period is over a single call is let
+ * through to probe Gitee, if it succeeds the circuit closes again, otherwise it stays open for twice as long.
+ */
+public class GiteeCircuitBreaker {
+
+    public static final int FAILURE_THRESHOLD = 5;
+
+    private static final Logger LOGGER = Logger.getLogger(GiteeCircuitBreaker.class.getName());
+    private static final long INITIAL_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_OPEN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public enum Decision {
+        CALL, PROBE, REJECT
+    }
+
+    private final String name;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openMillis = INITIAL_OPEN_MILLIS;
+    private long openedAt;
+    private long openUntil;
+    private String lastFailure;
+
+    public GiteeCircuitBreaker(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return whether the call may be made, {@link Decision#PROBE} if the caller has to probe Gitee first
+     */
+    public synchronized Decision beforeCall() {
+        switch (state) {
+            case CLOSED:
+                return Decision.CALL;
+            case OPEN:
+                if (System.currentTimeMillis() >= openUntil) {
+                    state = State.HALF_OPEN;
+                    return Decision.PROBE;
+                }
+                return Decision.REJECT;
+            default:
+                // a probe is in progress
+                return Decision.REJECT;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            LOGGER.log(Level.INFO, "Gitee connection {0} is available again, closing the circuit", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        openMillis = INITIAL_OPEN_MILLIS;
+    }
+
+    public synchronized void onFailure(String failure) {
+        consecutiveFailures++;
+        lastFailure = failure;
+        if (state == State.HALF_OPEN) {
+            openMillis = Math.min(MAX_OPEN_MILLIS, openMillis * 2);
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized String getLastFailure() {
+        return lastFailure;
+    }
+
+    public synchronized Date getOpenedAt() {
+        return state == State.CLOSED ? null : new Date(openedAt);
+    }
+
+    /**
+     * @return the seconds until the next probe, 0 if the circuit is closed
+     */
+    public synchronized long getRetryAfterSeconds() {
+        if (state == State.CLOSED) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(openUntil - System.currentTimeMillis()) + 1);
+    }
+
+    private void open() {
+        long now = System.currentTimeMillis();
+        if (state == State.CLOSED) {
+            openedAt = now;
+        }
+        state = State.OPEN;
+        openUntil = now + openMillis;
+        LOGGER.log(Level.WARNING, "Gitee connection {0} failed {1} times in a row, failing calls fast for {2} s: {3}",
+                   toArray(name, consecutiveFailures, TimeUnit.MILLISECONDS.toSeconds(openMillis), lastFailure));
+    }
+}
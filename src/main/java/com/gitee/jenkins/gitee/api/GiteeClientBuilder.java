@@ -49,6 +49,17 @@ public abstract class GiteeClientBuilder implements Comparable<GiteeClientBuilde
     @Nonnull
     public abstract GiteeClient buildClient(String url, String token, boolean ignoreCertificateErrors, int connectionTimeout, int readTimeout);
 
+    /**
+     * Builds a client whose calls are throttled by the rate limiter, guarded by the circuit breaker and sent over the
+     * connections of the pool, builders without support for them ignore all three. Without a pool the client opens
+     * its own connections, they are closed once the client is no longer used.
+     */
+    @Nonnull
+    public GiteeClient buildClient(String url, String token, boolean ignoreCertificateErrors, int connectionTimeout, int readTimeout,
+                                   GiteeRateLimiter rateLimiter, GiteeCircuitBreaker circuitBreaker, GiteeHttpPool httpPool) {
+        return buildClient(url, token, ignoreCertificateErrors, connectionTimeout, readTimeout);
+    }
+
     @Override
     public final int compareTo(@Nonnull GiteeClientBuilder other) {
         int o = ordinal - other.ordinal;
@@ -0,0 +1,181 @@
+package com.gitee.jenkins.gitee.api;
+
+import jenkins.util.Timer;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import java.lang.ref.WeakReference;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled HTTP connections of a Gitee connection.
+ * <p>
+ * Connections are kept alive for the time announced by Gitee, at most for the configured keep-alive, and idle
+ * connections are closed by a background task after the keep-alive.
+ */
+public class GiteeHttpPool implements ConnectionKeepAliveStrategy {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 60;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 30;
+    public static final int DEFAULT_KEEP_ALIVE = 60;
+
+    private static final long EVICTION_INTERVAL_SECONDS = 10;
+    private static final List<WeakReference<GiteeHttpPool>> POOLS = new ArrayList<>();
+    private static boolean evictorScheduled;
+
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final int keepAlive;
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    public GiteeHttpPool(int maxConnections, int maxConnectionsPerRoute, int keepAlive) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxConnectionsPerRoute = Math.max(1, Math.min(maxConnectionsPerRoute, this.maxConnections));
+        this.keepAlive = Math.max(1, keepAlive);
+    }
+
+    public synchronized PoolingHttpClientConnectionManager getConnectionManager(boolean ignoreCertificateErrors) {
+        if (connectionManager == null) {
+            connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", ignoreCertificateErrors ? createTrustAllSocketFactory() : SSLConnectionSocketFactory.getSocketFactory())
+                    .build());
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            register(this);
+        }
+        return connectionManager;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        BasicHeaderElementIterator iterator = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+        while (iterator.hasNext()) {
+            HeaderElement element = iterator.nextElement();
+            if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                try {
+                    return Math.min(TimeUnit.SECONDS.toMillis(Long.parseLong(element.getValue())), TimeUnit.SECONDS.toMillis(keepAlive));
+                } catch (NumberFormatException e) {
+                    // use the configured keep-alive
+                }
+            }
+        }
+        return TimeUnit.SECONDS.toMillis(keepAlive);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getLeased() {
+        PoolStats stats = getStats();
+        return stats == null ? 0 : stats.getLeased();
+    }
+
+    public int getAvailable() {
+        PoolStats stats = getStats();
+        return stats == null ? 0 : stats.getAvailable();
+    }
+
+    public int getPending() {
+        PoolStats stats = getStats();
+        return stats == null ? 0 : stats.getPending();
+    }
+
+    /**
+     * Closes all connections, the pool must not be used afterwards.
+     */
+    public synchronized void shutdown() {
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+    }
+
+    private synchronized PoolStats getStats() {
+        return connectionManager == null ? null : connectionManager.getTotalStats();
+    }
+
+    private synchronized void evictIdleConnections() {
+        if (connectionManager != null) {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(keepAlive, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @return a socket factory accepting any certificate and host name
+     */
+    public static SSLConnectionSocketFactory createTrustAllSocketFactory() {
+        try {
+            return new SSLConnectionSocketFactory(
+                SSLContexts.custom().loadTrustMaterial(null, new TrustStrategy() {
+                    @Override
+                    public boolean isTrusted(X509Certificate[] chain, String authType) {
+                        return true;
+                    }
+                }).build(),
+                SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to disable the certificate checks", e);
+        }
+    }
+
+    private static void register(GiteeHttpPool pool) {
+        synchronized (POOLS) {
+            POOLS.add(new WeakReference<>(pool));
+            if (!evictorScheduled) {
+                evictorScheduled = true;
+                Timer.get().scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (GiteeHttpPool pool : getPools()) {
+                            pool.evictIdleConnections();
+                        }
+                    }
+                }, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static List<GiteeHttpPool> getPools() {
+        List<GiteeHttpPool> pools = new ArrayList<>();
+        synchronized (POOLS) {
+            for (Iterator<WeakReference<GiteeHttpPool>> iterator = POOLS.iterator(); iterator.hasNext(); ) {
+                GiteeHttpPool pool = iterator.next().get();
+                if (pool == null) {
+                    iterator.remove();
+                } else {
+                    pools.add(pool);
+                }
+            }
+        }
+        return pools;
+    }
+}
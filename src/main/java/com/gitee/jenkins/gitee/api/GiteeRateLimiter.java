@@ -0,0 +1,181 @@
+package com.gitee.jenkins.gitee.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Client-side token bucket of a Gitee connection.
+ * <p>
+ * Every API call takes a token, the bucket refills at a rate that adapts to the answers of Gitee: a 429 (or an
+ * exhausted {@code X-RateLimit-Remaining}) halves the rate and pauses all calls until {@code Retry-After} or
+ * {@code X-RateLimit-Reset}, every successful call raises the rate a little again up to the maximum.
+ */
+public class GiteeRateLimiter {
+
+    public static final double MAX_RATE = 2.0;
+    public static final int CAPACITY = 20;
+    public static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+
+    private static final Logger LOGGER = Logger.getLogger(GiteeRateLimiter.class.getName());
+    private static final double MIN_RATE = 0.05;
+    private static final double RATE_INCREMENT = 0.02;
+    private static final long DEFAULT_PAUSE_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private final String name;
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private double rate = MAX_RATE;
+    private double tokens = CAPACITY;
+    private long refilledAt = System.currentTimeMillis();
+    private long pausedUntil;
+
+    public GiteeRateLimiter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Takes a token, waiting for it if necessary.
+     *
+     * @return {@code 0} if a token was taken, otherwise the milliseconds the caller would have to wait, which is more
+     *         than a call should be held
+     */
+    public synchronized long acquire() throws InterruptedException {
+        boolean throttled = false;
+        while (true) {
+            long now = System.currentTimeMillis();
+            refill(now);
+            long waitMillis = pausedUntil > now ? pausedUntil - now : 0;
+            if (waitMillis == 0 && tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            if (waitMillis == 0) {
+                waitMillis = (long) Math.ceil((1 - tokens) / rate * 1000);
+            }
+            if (waitMillis > MAX_WAIT_MILLIS) {
+                throttledCount.incrementAndGet();
+                return waitMillis;
+            }
+            if (!throttled) {
+                throttled = true;
+                throttledCount.incrementAndGet();
+            }
+            wait(waitMillis);
+        }
+    }
+
+    /**
+     * Adapts the rate to a response of Gitee.
+     *
+     * @param remaining  the value of {@code X-RateLimit-Remaining} or {@code null}
+     * @param reset      the value of {@code X-RateLimit-Reset} or {@code null}
+     * @param retryAfter the value of {@code Retry-After} or {@code null}
+     */
+    public synchronized void onResponse(int status, String remaining, String reset, String retryAfter) {
+        long now = System.currentTimeMillis();
+        refill(now);
+        Long remainingCalls = parseLong(remaining);
+        if (isRateLimited(status, remaining)) {
+            rateLimitedCount.incrementAndGet();
+            rate = Math.max(MIN_RATE, rate / 2);
+            tokens = 0;
+            long until = getPauseEnd(now, retryAfter, reset);
+            pausedUntil = Math.max(pausedUntil, until == 0 ? now + DEFAULT_PAUSE_MILLIS : until);
+            LOGGER.log(Level.INFO, "Gitee rate limit reached on {0}, pausing calls for {1} ms and lowering the rate to {2}/s",
+                       toArray(name, pausedUntil - now, rate));
+            return;
+        }
+        if (status < 400) {
+            rate = Math.min(MAX_RATE, rate + RATE_INCREMENT);
+        }
+        if (remainingCalls != null) {
+            tokens = Math.min(tokens, remainingCalls);
+            if (remainingCalls == 0) {
+                pausedUntil = Math.max(pausedUntil, getPauseEnd(now, null, reset));
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * @param remaining the value of {@code X-RateLimit-Remaining} or {@code null}
+     * @return whether the answer rejected a call for exceeding the rate limit, Gitee answers some of them with a 403
+     */
+    public static boolean isRateLimited(int status, String remaining) {
+        if (status == 429) {
+            return true;
+        }
+        Long remainingCalls = parseLong(remaining);
+        return status == 403 && remainingCalls != null && remainingCalls == 0;
+    }
+
+    public void onRetry() {
+        retryCount.incrementAndGet();
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill(System.currentTimeMillis());
+        return Math.floor(tokens);
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized long getPausedMillis() {
+        return Math.max(0, pausedUntil - System.currentTimeMillis());
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(CAPACITY, tokens + (now - refilledAt) * rate / 1000);
+            refilledAt = now;
+        }
+    }
+
+    private static long getPauseEnd(long now, String retryAfter, String reset) {
+        Long seconds = parseLong(retryAfter);
+        if (seconds != null) {
+            return now + TimeUnit.SECONDS.toMillis(seconds);
+        }
+        Long resetAt = parseLong(reset);
+        if (resetAt != null) {
+            // either an epoch second or the seconds until the reset
+            return resetAt > 1000000000L ? TimeUnit.SECONDS.toMillis(resetAt) : now + TimeUnit.SECONDS.toMillis(resetAt);
+        }
+        return 0;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
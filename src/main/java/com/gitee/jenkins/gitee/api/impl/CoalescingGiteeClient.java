@@ -0,0 +1,211 @@
+package com.gitee.jenkins.gitee.api.impl;
+
+import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.gitee.api.model.User;
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Buffers the notes on a pull request and posts them as one combined comment.
+ * <p>
+ * A note is held until no further note for the same pull request arrived for the window, but never longer than the
+ * max delay after the first note of the batch. The notes are joined in the order they arrived. A single thread only
+ * hands the due batches over, they are posted on the executor of the connection, each one after the previous batch on
+ * the same pull request has been posted, so the comments on a pull request keep their order. All other calls are
+ * passed through.
+ */
+public class CoalescingGiteeClient implements GiteeClient {
+
+    private static final Logger LOGGER = Logger.getLogger(CoalescingGiteeClient.class.getName());
+    private static final String SEPARATOR = "\n\n---\n\n";
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+        new NamingThreadFactory(new DaemonThreadFactory(), "Gitee note coalescer"));
+
+    private final GiteeClient client;
+    private final Executor executor;
+    private final long windowMillis;
+    private final long maxDelayMillis;
+    private final Map<String, Batch> batches = new HashMap<>();
+    // the last batch handed over for posting per pull request, until it has been posted
+    private final Map<String, ListenableFuture<Void>> posting = new HashMap<>();
+
+    public CoalescingGiteeClient(GiteeClient client, int windowSeconds, int maxDelaySeconds, Executor executor) {
+        this.client = client;
+        this.executor = executor;
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        this.maxDelayMillis = TimeUnit.SECONDS.toMillis(Math.max(windowSeconds, maxDelaySeconds));
+    }
+
+    @Override
+    public String getHostUrl() {
+        return client.getHostUrl();
+    }
+
+    @Override
+    public void acceptPullRequest(PullRequest mr, String mergeCommitMessage, boolean shouldRemoveSourceBranch) {
+        client.acceptPullRequest(mr, mergeCommitMessage, shouldRemoveSourceBranch);
+    }
+
+    /**
+     * Blocks until the combined comment containing the note has been posted.
+     */
+    @Override
+    public void createPullRequestNote(PullRequest mr, String body) {
+        try {
+            queueNote(mr, body).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the comment to be posted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public User getCurrentUser() {
+        return client.getCurrentUser();
+    }
+
+    /**
+     * @return a future completed when the combined comment containing the note has been posted
+     */
+    public synchronized ListenableFuture<Void> queueNote(PullRequest mr, String body) {
+        String key = mr.getRepoOwner() + "/" + mr.getRepoPath() + "!" + mr.getIid();
+        long now = System.currentTimeMillis();
+        Batch batch = batches.get(key);
+        if (batch == null) {
+            batch = new Batch(key, mr, now);
+            batches.put(key, batch);
+        } else {
+            batch.flush.cancel(false);
+        }
+        batch.bodies.add(body);
+        long delay = Math.min(now + windowMillis, batch.firstNoteAt + maxDelayMillis) - now;
+        batch.flush = SCHEDULER.schedule(batch, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        return batch.posted;
+    }
+
+    /**
+     * Posts the buffered notes without waiting for the end of their window.
+     *
+     * @return a future completed when all of them have been posted or failed
+     */
+    public ListenableFuture<List<Void>> flush() {
+        List<Batch> flushed;
+        synchronized (this) {
+            flushed = new ArrayList<>(batches.values());
+            for (Batch batch : flushed) {
+                batch.flush.cancel(false);
+            }
+        }
+        List<ListenableFuture<Void>> posted = new ArrayList<>();
+        for (Batch batch : flushed) {
+            batch.run();
+            posted.add(batch.posted);
+        }
+        return Futures.successfulAsList(posted);
+    }
+
+    /**
+     * Takes the batch, no more notes are added to it afterwards.
+     *
+     * @return the batch posted before on the same pull request, {@code null} if the batch has already been taken
+     */
+    private synchronized ListenableFuture<Void> take(final Batch batch) {
+        if (batches.get(batch.key) != batch) {
+            return null;
+        }
+        batches.remove(batch.key);
+        ListenableFuture<Void> previous = posting.put(batch.key, batch.posted);
+        batch.posted.addListener(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (CoalescingGiteeClient.this) {
+                    if (posting.get(batch.key) == batch.posted) {
+                        posting.remove(batch.key);
+                    }
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return previous == null ? Futures.<Void>immediateFuture(null) : previous;
+    }
+
+    private class Batch implements Runnable {
+        private final String key;
+        private final PullRequest mr;
+        private final long firstNoteAt;
+        private final List<String> bodies = new ArrayList<>();
+        private final SettableFuture<Void> posted = SettableFuture.create();
+        private ScheduledFuture<?> flush;
+
+        private Batch(String key, PullRequest mr, long firstNoteAt) {
+            this.key = key;
+            this.mr = mr;
+            this.firstNoteAt = firstNoteAt;
+        }
+
+        /**
+         * Hands the batch over for posting once the previous batch on the pull request has been posted.
+         */
+        @Override
+        public void run() {
+            ListenableFuture<Void> previous = take(this);
+            if (previous == null) {
+                // already taken by a flush that was scheduled before the last note arrived
+                return;
+            }
+            previous.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                post();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        LOGGER.log(Level.WARNING, "Too many pending Gitee API calls on {0}, rejected comment on {1}",
+                                   toArray(client.getHostUrl(), key));
+                        posted.setException(e);
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        private void post() {
+            try {
+                client.createPullRequestNote(mr, Joiner.on(SEPARATOR).join(bodies));
+                LOGGER.log(Level.FINE, "Posted {0} note(s) on {1} as one comment", toArray(bodies.size(), key));
+                posted.set(null);
+            } catch (RuntimeException e) {
+                posted.setException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.gitee.jenkins.gitee.api.impl;
+
+import com.gitee.jenkins.gitee.api.AsyncGiteeClient;
+import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.gitee.api.model.User;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Runs the calls of a blocking {@link GiteeClient} on a bounded pool of daemon threads.
+ * Idle threads are released, so a pool of a removed connection does not keep any thread alive.
+ */
+public class ExecutorAsyncGiteeClient implements AsyncGiteeClient {
+
+    private static final Logger LOGGER = Logger.getLogger(ExecutorAsyncGiteeClient.class.getName());
+
+    private final GiteeClient client;
+    private final ListeningExecutorService executor;
+
+    /**
+     * @param executor the executor of the connection, see {@link #newExecutor(String, int, int)}
+     */
+    public ExecutorAsyncGiteeClient(GiteeClient client, ListeningExecutorService executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    /**
+     * @return a bounded pool of daemon threads for the calls of a connection
+     */
+    public static ListeningExecutorService newExecutor(String connectionName, int threads, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                                         new ArrayBlockingQueue<Runnable>(queueCapacity),
+                                                         new NamingThreadFactory(new DaemonThreadFactory(), "Gitee API " + connectionName));
+        pool.allowCoreThreadTimeOut(true);
+        return MoreExecutors.listeningDecorator(pool);
+    }
+
+    @Override
+    public String getHostUrl() {
+        return client.getHostUrl();
+    }
+
+    @Override
+    public ListenableFuture<Void> acceptPullRequest(final PullRequest mr, final String mergeCommitMessage, final boolean shouldRemoveSourceBranch) {
+        return submit("accept pull request " + mr.getIid(), new Callable<Void>() {
+            @Override
+            public Void call() {
+                client.acceptPullRequest(mr, mergeCommitMessage, shouldRemoveSourceBranch);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> createPullRequestNote(final PullRequest mr, final String body) {
+        if (client instanceof CoalescingGiteeClient) {
+            // a buffered note must not hold one of the threads until its batch is posted
+            return addLogging("comment on pull request " + mr.getIid(), ((CoalescingGiteeClient) client).queueNote(mr, body));
+        }
+        return submit("comment on pull request " + mr.getIid(), new Callable<Void>() {
+            @Override
+            public Void call() {
+                client.createPullRequestNote(mr, body);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return whether the notes are buffered by a {@link CoalescingGiteeClient}, which keeps their order
+     */
+    @Override
+    public boolean isOrderingNotes() {
+        return client instanceof CoalescingGiteeClient;
+    }
+
+    @Override
+    public ListenableFuture<User> getCurrentUser() {
+        return submit("get current user", new Callable<User>() {
+            @Override
+            public User call() {
+                return client.getCurrentUser();
+            }
+        });
+    }
+
+    private <T> ListenableFuture<T> submit(final String description, Callable<T> call) {
+        ListenableFuture<T> future;
+        try {
+            future = executor.submit(call);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Too many pending Gitee API calls on {0}, rejected: {1}", toArray(client.getHostUrl(), description));
+            return Futures.immediateFailedFuture(e);
+        }
+        return addLogging(description, future);
+    }
+
+    private <T> ListenableFuture<T> addLogging(final String description, ListenableFuture<T> future) {
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                LOGGER.log(Level.FINE, "Gitee API call on {0} completed: {1}", toArray(client.getHostUrl(), description));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOGGER.log(Level.WARNING, "Gitee API call on " + client.getHostUrl() + " failed: " + description, t);
+            }
+        });
+        return future;
+    }
+}
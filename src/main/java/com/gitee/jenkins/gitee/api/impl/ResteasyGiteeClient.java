@@ -1,21 +1,34 @@
 package com.gitee.jenkins.gitee.api.impl;
 
 
+import com.gitee.jenkins.gitee.api.GiteeCircuitBreaker;
 import com.gitee.jenkins.gitee.api.GiteeClient;
 import com.gitee.jenkins.gitee.api.model.*;
 import com.google.common.base.Function;
 
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.Callable;
+
 
 final class ResteasyGiteeClient implements GiteeClient {
     private final String hostUrl;
     private final GiteeApiProxy api;
     private final Function<PullRequest, Integer> pullRequestIdProvider;
+    private final GiteeCircuitBreaker circuitBreaker;
 
 
     ResteasyGiteeClient(String hostUrl, GiteeApiProxy api, Function<PullRequest, Integer> pullRequestIdProvider) {
+        this(hostUrl, api, pullRequestIdProvider, null);
+    }
+
+    ResteasyGiteeClient(String hostUrl, GiteeApiProxy api, Function<PullRequest, Integer> pullRequestIdProvider, GiteeCircuitBreaker circuitBreaker) {
         this.hostUrl = hostUrl;
         this.api = api;
         this.pullRequestIdProvider = pullRequestIdProvider;
+        this.circuitBreaker = circuitBreaker;
     }
 
     @Override
@@ -25,17 +38,93 @@ final class ResteasyGiteeClient implements GiteeClient {
 
     // Gitee v5 don't support commit message and remove source branch
     @Override
-    public void acceptPullRequest(PullRequest mr, String mergeCommitMessage, boolean shouldRemoveSourceBranch) {
-        api.acceptPullRequest(mr.getRepoOwner(), mr.getRepoPath(), mr.getIid());
+    public void acceptPullRequest(final PullRequest mr, String mergeCommitMessage, boolean shouldRemoveSourceBranch) {
+        call(new Callable<Void>() {
+            @Override
+            public Void call() {
+                api.acceptPullRequest(mr.getRepoOwner(), mr.getRepoPath(), mr.getIid());
+                return null;
+            }
+        });
     }
 
     @Override
-    public void createPullRequestNote(PullRequest mr, String body) {
-        api.createPullRequestNote(mr.getRepoOwner(), mr.getRepoPath(), mr.getIid(), body);
+    public void createPullRequestNote(final PullRequest mr, final String body) {
+        call(new Callable<Void>() {
+            @Override
+            public Void call() {
+                api.createPullRequestNote(mr.getRepoOwner(), mr.getRepoPath(), mr.getIid(), body);
+                return null;
+            }
+        });
     }
 
     @Override
     public User getCurrentUser() {
-        return api.getCurrentUser();
+        return call(new Callable<User>() {
+            @Override
+            public User call() {
+                return api.getCurrentUser();
+            }
+        });
+    }
+
+    private <T> T call(Callable<T> call) {
+        if (circuitBreaker != null) {
+            switch (circuitBreaker.beforeCall()) {
+                case REJECT:
+                    throw unavailable();
+                case PROBE:
+                    try {
+                        api.headCurrentUser();
+                        circuitBreaker.onSuccess();
+                    } catch (RuntimeException e) {
+                        onFailure(e);
+                        if (circuitBreaker.getState() != GiteeCircuitBreaker.State.CLOSED) {
+                            throw unavailable();
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        try {
+            T result = call.call();
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess();
+            }
+            return result;
+        } catch (RuntimeException e) {
+            onFailure(e);
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void onFailure(RuntimeException e) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (e instanceof ProcessingException) {
+            circuitBreaker.onFailure(e.getCause() == null ? e.toString() : e.getCause().toString());
+        } else if (e instanceof WebApplicationException) {
+            Response response = ((WebApplicationException) e).getResponse();
+            int status = response == null ? 0 : response.getStatus();
+            if (status >= 500) {
+                circuitBreaker.onFailure(e.getMessage());
+            } else if (status != 429) {
+                // any other answer proves Gitee is reachable, a 429 may come from the local rate limiter
+                circuitBreaker.onSuccess();
+            } else if (circuitBreaker.getState() == GiteeCircuitBreaker.State.HALF_OPEN) {
+                circuitBreaker.onFailure(e.getMessage());
+            }
+        }
+    }
+
+    private ServiceUnavailableException unavailable() {
+        return new ServiceUnavailableException("Gitee at " + hostUrl + " is unavailable, failing fast: " + circuitBreaker.getLastFailure(),
+                                               circuitBreaker.getRetryAfterSeconds());
     }
 }
@@ -2,8 +2,11 @@ package com.gitee.jenkins.gitee.api.impl;
 
 
 import com.gitee.jenkins.gitee.JacksonConfig;
+import com.gitee.jenkins.gitee.api.GiteeCircuitBreaker;
 import com.gitee.jenkins.gitee.api.GiteeClient;
 import com.gitee.jenkins.gitee.api.GiteeClientBuilder;
+import com.gitee.jenkins.gitee.api.GiteeHttpPool;
+import com.gitee.jenkins.gitee.api.GiteeRateLimiter;
 import com.gitee.jenkins.gitee.api.model.PullRequest;
 import com.gitee.jenkins.util.JsonUtil;
 import com.gitee.jenkins.util.LoggerUtil;
@@ -17,12 +20,15 @@ import hudson.init.Initializer;
 import jenkins.model.Jenkins;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.jboss.resteasy.client.jaxrs.ClientHttpEngine;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
 import org.jboss.resteasy.plugins.providers.JaxrsFormProvider;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
@@ -39,6 +45,7 @@ import javax.ws.rs.client.ClientResponseContext;
 import javax.ws.rs.client.ClientResponseFilter;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.RuntimeDelegate;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -60,6 +67,10 @@ import static java.net.Proxy.Type.HTTP;
 public class ResteasyGiteeClientBuilder extends GiteeClientBuilder {
     private static final Logger LOGGER = Logger.getLogger(ResteasyGiteeClientBuilder.class.getName());
     private static final String PRIVATE_TOKEN = "PRIVATE-TOKEN";
+    private static final String RATE_LIMIT_REMAINING = GiteeRateLimiter.RATE_LIMIT_REMAINING;
+    private static final String RATE_LIMIT_RESET = "X-RateLimit-Reset";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final String THROTTLED_LOCALLY = "X-Jenkins-Throttled";
 
     @Initializer(before = InitMilestone.PLUGINS_STARTED)
     public static void setRuntimeDelegate() {
@@ -78,41 +89,36 @@ public class ResteasyGiteeClientBuilder extends GiteeClientBuilder {
     @Nonnull
     @Override
     public final GiteeClient buildClient(String url, String apiToken, boolean ignoreCertificateErrors, int connectionTimeout, int readTimeout) {
+        return buildClient(url, apiToken, ignoreCertificateErrors, connectionTimeout, readTimeout, null, null, null);
+    }
+
+    @Nonnull
+    @Override
+    public final GiteeClient buildClient(String url, String apiToken, boolean ignoreCertificateErrors, int connectionTimeout, int readTimeout,
+                                         GiteeRateLimiter rateLimiter, GiteeCircuitBreaker circuitBreaker, GiteeHttpPool httpPool) {
         return buildClient(
             url,
             apiToken,
             Jenkins.getActiveInstance().proxy,
             ignoreCertificateErrors,
             connectionTimeout,
-            readTimeout
+            readTimeout,
+            rateLimiter,
+            circuitBreaker,
+            httpPool
         );
     }
 
-    private GiteeClient buildClient(String url, String apiToken, ProxyConfiguration httpProxyConfig, boolean ignoreCertificateErrors, int connectionTimeout, int readTimeout) {
-        ResteasyClientBuilder builder = new ResteasyClientBuilder();
-
-        if (ignoreCertificateErrors) {
-            builder.hostnameVerification(ResteasyClientBuilder.HostnameVerificationPolicy.ANY);
-            builder.disableTrustManager();
-        }
+    private GiteeClient buildClient(String url, String apiToken, ProxyConfiguration httpProxyConfig, boolean ignoreCertificateErrors, int connectionTimeout, int readTimeout,
+                                    GiteeRateLimiter rateLimiter, GiteeCircuitBreaker circuitBreaker, GiteeHttpPool httpPool) {
+        ResteasyClientBuilder builder = new ResteasyClientBuilder()
+            .httpEngine(createHttpEngine(url, httpProxyConfig, ignoreCertificateErrors, connectionTimeout, readTimeout, httpPool));
 
-        if (httpProxyConfig != null) {
-            Proxy proxy = httpProxyConfig.createProxy(getHost(url));
-            if (proxy.type() == HTTP) {
-                InetSocketAddress address = (InetSocketAddress) proxy.address();
-                builder.defaultProxy(address.getHostString().replaceFirst("^.*://", ""),
-                    address.getPort(),
-                    address.getHostName().startsWith("https") ? "https" : "http",
-                    httpProxyConfig.getUserName(),
-                    httpProxyConfig.getPassword());
-            }
+        if (rateLimiter != null) {
+            builder.register(new RateLimitFilter(rateLimiter));
         }
 
         GiteeApiProxy apiProxy = builder
-            .connectionPoolSize(60)
-            .maxPooledPerRoute(30)
-            .establishConnectionTimeout(connectionTimeout, TimeUnit.SECONDS)
-            .socketTimeout(readTimeout, TimeUnit.SECONDS)
             .register(new JacksonJsonProvider())
             .register(new JacksonConfig())
             .register(new ApiHeaderTokenFilter(apiToken))
@@ -124,7 +130,47 @@ public class ResteasyGiteeClientBuilder extends GiteeClientBuilder {
             .classloader(apiProxyClass.getClassLoader())
             .build();
 
-        return new ResteasyGiteeClient(url, apiProxy, pullRequestIdProvider);
+        return new ResteasyGiteeClient(url, apiProxy, pullRequestIdProvider, circuitBreaker);
+    }
+
+    /**
+     * The engine asks for gzip-compressed responses and decompresses them, connections come from the pool of the
+     * Gitee connection. Without a pool the engine has its own connections, they are closed with the engine.
+     */
+    private ClientHttpEngine createHttpEngine(String url, ProxyConfiguration httpProxyConfig, boolean ignoreCertificateErrors, int connectionTimeout,
+                                              int readTimeout, @Nullable GiteeHttpPool httpPool) {
+        HttpClientBuilder httpClient = HttpClientBuilder.create();
+        if (httpPool != null) {
+            httpClient.setConnectionManager(httpPool.getConnectionManager(ignoreCertificateErrors))
+                .setKeepAliveStrategy(httpPool);
+        } else if (ignoreCertificateErrors) {
+            httpClient.setSSLSocketFactory(GiteeHttpPool.createTrustAllSocketFactory());
+        }
+        httpClient
+            .setDefaultRequestConfig(RequestConfig.custom()
+                                         .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(connectionTimeout))
+                                         .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(connectionTimeout))
+                                         .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(readTimeout))
+                                         .build());
+
+        if (httpProxyConfig != null) {
+            Proxy proxy = httpProxyConfig.createProxy(getHost(url));
+            if (proxy.type() == HTTP) {
+                InetSocketAddress address = (InetSocketAddress) proxy.address();
+                String hostname = address.getHostString().replaceFirst("^.*://", "");
+                httpClient.setProxy(new HttpHost(hostname, address.getPort(), address.getHostName().startsWith("https") ? "https" : "http"));
+                if (httpProxyConfig.getUserName() != null && httpProxyConfig.getPassword() != null) {
+                    CredentialsProvider proxyCredentials = new BasicCredentialsProvider();
+                    proxyCredentials.setCredentials(new AuthScope(hostname, address.getPort()),
+                                                    new UsernamePasswordCredentials(httpProxyConfig.getUserName(), httpProxyConfig.getPassword()));
+                    httpClient.setDefaultCredentialsProvider(proxyCredentials);
+                }
+            }
+        }
+
+        // a pool belongs to the Gitee connection and outlives the client, otherwise the engine closes its connections
+        // when it is closed or garbage collected together with the client
+        return new ApacheHttpClient4Engine(httpClient.build(), httpPool == null);
     }
 
     private String getHost(String url) {
@@ -220,36 +266,52 @@ public class ResteasyGiteeClientBuilder extends GiteeClientBuilder {
         }
     }
 
-    @Priority(Priorities.HEADER_DECORATOR)
-    private static class RemoveAcceptEncodingFilter implements ClientRequestFilter {
-        RemoveAcceptEncodingFilter() {}
-        @Override
-        public void filter(ClientRequestContext clientRequestContext) {
-            clientRequestContext.getHeaders().remove("Accept-Encoding");
-        }
-    }
+    @Priority(Priorities.AUTHENTICATION)
+    private static class RateLimitFilter implements ClientRequestFilter, ClientResponseFilter {
+        private final GiteeRateLimiter rateLimiter;
 
-    private static class ResteasyClientBuilder extends org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder {
-        private CredentialsProvider proxyCredentials;
+        RateLimitFilter(GiteeRateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+        }
 
-        @SuppressWarnings("UnusedReturnValue")
-        ResteasyClientBuilder defaultProxy(String hostname, int port, final String scheme, String username, String password) {
-            super.defaultProxy(hostname, port, scheme);
-            if (username != null && password != null) {
-                proxyCredentials = new BasicCredentialsProvider();
-                proxyCredentials.setCredentials(new AuthScope(hostname, port), new UsernamePasswordCredentials(username, password));
+        @Override
+        public void filter(ClientRequestContext context) {
+            long waitMillis;
+            try {
+                waitMillis = rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                waitMillis = 0;
+            }
+            if (waitMillis > 0) {
+                // answer locally instead of holding the call, callers handle it like a 429 of Gitee
+                context.abortWith(Response.status(429)
+                                          .header(RETRY_AFTER, TimeUnit.MILLISECONDS.toSeconds(waitMillis) + 1)
+                                          .header(THROTTLED_LOCALLY, true)
+                                          .build());
             }
-            return this;
         }
 
-        @SuppressWarnings("deprecation")
         @Override
-        protected ClientHttpEngine initDefaultEngine() {
-            ApacheHttpClient4Engine httpEngine = (ApacheHttpClient4Engine) super.initDefaultEngine();
-            if (proxyCredentials != null) {
-                ((DefaultHttpClient) httpEngine.getHttpClient()).setCredentialsProvider(proxyCredentials);
+        public void filter(ClientRequestContext request, ClientResponseContext response) {
+            MultivaluedMap<String, String> headers = response.getHeaders();
+            if (headers.containsKey(THROTTLED_LOCALLY)) {
+                return;
             }
-            return httpEngine;
+            rateLimiter.onResponse(response.getStatus(), headers.getFirst(RATE_LIMIT_REMAINING), headers.getFirst(RATE_LIMIT_RESET),
+                                   headers.getFirst(RETRY_AFTER));
+        }
+    }
+
+    /**
+     * Leaves the content negotiation to the HTTP engine, it asks for gzip itself and decompresses the response.
+     */
+    @Priority(Priorities.HEADER_DECORATOR)
+    private static class RemoveAcceptEncodingFilter implements ClientRequestFilter {
+        RemoveAcceptEncodingFilter() {}
+        @Override
+        public void filter(ClientRequestContext clientRequestContext) {
+            clientRequestContext.getHeaders().remove("Accept-Encoding");
         }
     }
 }
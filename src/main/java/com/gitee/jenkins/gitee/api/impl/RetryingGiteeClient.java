@@ -0,0 +1,134 @@
+package com.gitee.jenkins.gitee.api.impl;
+
+import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.gitee.api.GiteeRateLimiter;
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.gitee.api.model.User;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Retries failed calls with jittered exponential backoff.
+ * <p>
+ * Calls rejected with 429, 503 or a 403 for an exhausted {@code X-RateLimit-Remaining} were not processed by Gitee and
+ * are always retried. Server errors and connection failures are only retried for idempotent calls, a note could
+ * otherwise be posted twice and a pull request be merged although its first accept only timed out.
+ */
+public class RetryingGiteeClient implements GiteeClient {
+
+    private static final Logger LOGGER = Logger.getLogger(RetryingGiteeClient.class.getName());
+    private static final int MAX_RETRIES = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final GiteeClient client;
+    private final GiteeRateLimiter rateLimiter;
+    private final Random random = new Random();
+
+    public RetryingGiteeClient(GiteeClient client, GiteeRateLimiter rateLimiter) {
+        this.client = client;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public String getHostUrl() {
+        return client.getHostUrl();
+    }
+
+    @Override
+    public void acceptPullRequest(final PullRequest mr, final String mergeCommitMessage, final boolean shouldRemoveSourceBranch) {
+        call("accept pull request " + mr.getIid(), false, new Callable<Void>() {
+            @Override
+            public Void call() {
+                client.acceptPullRequest(mr, mergeCommitMessage, shouldRemoveSourceBranch);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void createPullRequestNote(final PullRequest mr, final String body) {
+        call("comment on pull request " + mr.getIid(), false, new Callable<Void>() {
+            @Override
+            public Void call() {
+                client.createPullRequestNote(mr, body);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public User getCurrentUser() {
+        return call("get current user", true, new Callable<User>() {
+            @Override
+            public User call() {
+                return client.getCurrentUser();
+            }
+        });
+    }
+
+    private <T> T call(String description, boolean idempotent, Callable<T> call) {
+        for (int retry = 0; ; retry++) {
+            try {
+                return call.call();
+            } catch (RuntimeException e) {
+                if (retry >= MAX_RETRIES || !isRetryable(e, idempotent)) {
+                    throw e;
+                }
+                long backoff = getBackoff(retry);
+                rateLimiter.onRetry();
+                LOGGER.log(Level.FINE, "Retrying {0} on {1} in {2} ms: {3}", toArray(description, client.getHostUrl(), backoff, e.getMessage()));
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private boolean isRetryable(RuntimeException e, boolean idempotent) {
+        if (e instanceof WebApplicationException) {
+            Response response = ((WebApplicationException) e).getResponse();
+            int status = response == null ? 0 : response.getStatus();
+            if (status == 503 || GiteeRateLimiter.isRateLimited(status, response.getHeaderString(GiteeRateLimiter.RATE_LIMIT_REMAINING))) {
+                // a caller waiting longer than the backoff allows is better off trying again later on its own
+                return getRetryAfterMillis(response) <= MAX_BACKOFF_MILLIS && rateLimiter.getPausedMillis() <= MAX_BACKOFF_MILLIS;
+            }
+            return idempotent && (status == 500 || status == 502 || status == 504);
+        }
+        return idempotent && e instanceof ProcessingException;
+    }
+
+    private static long getRetryAfterMillis(Response response) {
+        String retryAfter = response.getHeaderString("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return a random delay up to the exponential backoff of the retry ("full jitter")
+     */
+    private long getBackoff(int retry) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << retry);
+        return 1 + (long) (random.nextDouble() * backoff);
+    }
+}
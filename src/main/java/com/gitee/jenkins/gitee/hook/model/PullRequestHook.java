@@ -1,6 +1,8 @@
 package com.gitee.jenkins.gitee.hook.model;
 
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.gitee.jenkins.util.LazyListDeserializer;
 import net.karneim.pojobuilder.GeneratePojoBuilder;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -84,6 +86,7 @@ public class PullRequestHook extends WebHook {
         return labels;
     }
 
+    @JsonDeserialize(using = LazyListDeserializer.class)
     public void setLabels(List<PullRequestLabel> labels) {
         this.labels = labels;
     }
@@ -1,11 +1,15 @@
 package com.gitee.jenkins.gitee.hook.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.gitee.jenkins.util.LazyListDeserializer;
 import net.karneim.pojobuilder.GeneratePojoBuilder;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Robin Müller
@@ -25,6 +29,7 @@ public class PushHook extends WebHook {
     private Project project;
     private List<Commit> commits;
     private Integer totalCommitsCount;
+    private transient Set<String> changedPaths;
 
     public String getBefore() {
         return before;
@@ -115,6 +120,7 @@ public class PushHook extends WebHook {
         return commits;
     }
 
+    @JsonDeserialize(using = LazyListDeserializer.class)
     public void setCommits(List<Commit> commits) {
         this.commits = commits;
     }
@@ -127,6 +133,32 @@ public class PushHook extends WebHook {
         this.totalCommitsCount = totalCommitsCount;
     }
 
+    /**
+     * @return the files added, modified or removed by the commits of this push,
+     * {@code null} if the payload does not list all commits
+     */
+    public Set<String> changedPaths() {
+        if (commits == null || commits.isEmpty() || (totalCommitsCount != null && totalCommitsCount > commits.size())) {
+            return null;
+        }
+        if (changedPaths == null) {
+            Set<String> paths = new HashSet<>();
+            for (Commit commit : commits) {
+                addAll(paths, commit.getAdded());
+                addAll(paths, commit.getModified());
+                addAll(paths, commit.getRemoved());
+            }
+            changedPaths = paths;
+        }
+        return changedPaths;
+    }
+
+    private static void addAll(Set<String> paths, List<String> changes) {
+        if (changes != null) {
+            paths.addAll(changes);
+        }
+    }
+
     public String getWebHookDescription() {
         return getHookName() + " ref = " + ref + " commit sha = " + after;
     }
@@ -1,5 +1,7 @@
 package com.gitee.jenkins.gitee.hook.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.base.Supplier;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
@@ -15,11 +17,25 @@ public abstract class WebHook {
     private String hookName;
     private String jsonBody;
     private User sender;
+    private transient Supplier<String> jsonBodyHash;
 
     public String getJsonBody() { return  this.jsonBody; }
 
     public void setJsonBody(String json) { this.jsonBody = json; }
 
+    /**
+     * @return the hash of the payload in the payload store, it is stored on first use, once for all hooks bound from it
+     */
+    @JsonIgnore
+    public String getJsonBodyHash() {
+        return jsonBodyHash == null ? null : jsonBodyHash.get();
+    }
+
+    @JsonIgnore
+    public void setJsonBodyHash(Supplier<String> jsonBodyHash) {
+        this.jsonBodyHash = jsonBodyHash;
+    }
+
     public String getHookName() {
         return this.hookName;
     }
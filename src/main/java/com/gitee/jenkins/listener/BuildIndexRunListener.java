@@ -0,0 +1,52 @@
+package com.gitee.jenkins.listener;
+
+import com.gitee.jenkins.util.BuildIndex;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SCMListener;
+import hudson.scm.SCM;
+import hudson.scm.SCMRevisionState;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+
+/**
+ * Keeps the {@link BuildIndex} of a job up to date once it has been built.
+ */
+@Extension
+public class BuildIndexRunListener extends RunListener<Run<?, ?>> {
+
+    @Override
+    public void onCompleted(Run<?, ?> build, @Nonnull TaskListener listener) {
+        BuildIndex index = BuildIndex.getIfPresent(build.getParent());
+        if (index != null) {
+            index.add(build);
+        }
+    }
+
+    @Override
+    public void onDeleted(Run<?, ?> build) {
+        BuildIndex index = BuildIndex.getIfPresent(build.getParent());
+        if (index != null) {
+            index.remove(build);
+        }
+    }
+
+    /**
+     * Running builds are indexed as soon as the revision to build is known.
+     */
+    @Extension
+    public static class CheckoutListener extends SCMListener {
+        @Override
+        public void onCheckout(Run<?, ?> build, SCM scm, FilePath workspace, TaskListener listener,
+                               File changelogFile, SCMRevisionState pollingBaseline) throws Exception {
+            BuildIndex index = BuildIndex.getIfPresent(build.getParent());
+            if (index != null) {
+                index.add(build);
+            }
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.gitee.jenkins.outbox;
+
+import com.gitee.jenkins.connection.GiteeConnectionConfig;
+import com.gitee.jenkins.gitee.api.AsyncGiteeClient;
+import com.gitee.jenkins.gitee.api.GiteeRateLimiter;
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.util.JsonUtil;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Durable outbox for outbound Gitee API operations (pull request notes and merges).
+ * <p>
+ * Publishers only append the operation to a journal under {@code JENKINS_HOME/gitee-outbox} and return, a single
+ * dispatcher thread delivers it through the async client of the connection with exponential backoff. The journal is replayed on startup, so operations queued
+ * before a restart are still delivered. Operations that failed {@link #MAX_ATTEMPTS} times, or were rejected by Gitee,
+ * are kept as failed until an administrator retries or discards them. A merge is only attempted for
+ * {@link #ACCEPT_EXPIRY_MINUTES} minutes after its build, the pull request may have moved past the built commit later.
+ */
+public final class GiteeOutbox {
+
+    public static final int MAX_ATTEMPTS = 10;
+    public static final int ACCEPT_EXPIRY_MINUTES = 10;
+
+    private static final Logger LOGGER = Logger.getLogger(GiteeOutbox.class.getName());
+    private static final GiteeOutbox INSTANCE = new GiteeOutbox();
+    private static final String DIRECTORY = "gitee-outbox";
+    private static final String JOURNAL = "journal.jsonl";
+    private static final long POLL_INTERVAL_SECONDS = 10;
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int COMPACT_THRESHOLD = 1000;
+    private static final int MAX_CONCURRENT_DELIVERIES = 50;
+    // a hanging call must not stop the dispatcher, its entry is retried like a failed one
+    private static final long ROUND_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Map<String, OutboxEntry> entries = new LinkedHashMap<>();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final Runnable dispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                dispatch();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to dispatch the Gitee outbox", e);
+            }
+        }
+    };
+    private int journalRecords;
+    private ScheduledExecutorService dispatcher;
+
+    private GiteeOutbox() { }
+
+    public static GiteeOutbox get() {
+        return INSTANCE;
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void start() {
+        INSTANCE.load();
+        INSTANCE.startDispatcher();
+    }
+
+    public OutboxEntry enqueueNote(String connectionName, Run<?, ?> build, PullRequest pullRequest, String body) {
+        return enqueue(newEntry(OutboxEntry.Type.NOTE, connectionName, build, pullRequest, body, false));
+    }
+
+    /**
+     * @param sha the head of the pull request the build tested, kept for the record as Gitee cannot verify it on merge
+     */
+    public OutboxEntry enqueueAccept(String connectionName, Run<?, ?> build, PullRequest pullRequest, String sha,
+                                     String mergeCommitMessage, boolean removeSourceBranch) {
+        OutboxEntry entry = newEntry(OutboxEntry.Type.ACCEPT, connectionName, build, pullRequest, mergeCommitMessage, removeSourceBranch);
+        entry.setSha(sha);
+        entry.setExpiresAt(entry.getCreatedAt() + TimeUnit.MINUTES.toMillis(ACCEPT_EXPIRY_MINUTES));
+        return enqueue(entry);
+    }
+
+    /**
+     * Makes a failed entry pending again, starting over with its attempts. An administrator retrying a merge confirms
+     * it, so it gets another {@link #ACCEPT_EXPIRY_MINUTES} minutes.
+     */
+    public synchronized boolean retry(String id) {
+        OutboxEntry entry = entries.get(id);
+        if (entry == null || entry.getStatus() != OutboxEntry.Status.FAILED) {
+            return false;
+        }
+        entry.setStatus(OutboxEntry.Status.PENDING);
+        entry.setAttempts(0);
+        entry.setNextAttemptAt(System.currentTimeMillis());
+        if (entry.getExpiresAt() != 0) {
+            entry.setExpiresAt(entry.getNextAttemptAt() + TimeUnit.MINUTES.toMillis(ACCEPT_EXPIRY_MINUTES));
+        }
+        append(entry);
+        wakeUp();
+        return true;
+    }
+
+    public synchronized boolean discard(String id) {
+        OutboxEntry entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        entry.setStatus(OutboxEntry.Status.DISCARDED);
+        append(entry);
+        return true;
+    }
+
+    public List<OutboxEntry> getPendingEntries() {
+        return getEntries(OutboxEntry.Status.PENDING);
+    }
+
+    public List<OutboxEntry> getFailedEntries() {
+        return getEntries(OutboxEntry.Status.FAILED);
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    public long getRetriedCount() {
+        return retriedCount.get();
+    }
+
+    private synchronized List<OutboxEntry> getEntries(OutboxEntry.Status status) {
+        List<OutboxEntry> result = new ArrayList<>();
+        for (OutboxEntry entry : entries.values()) {
+            if (entry.getStatus() == status) {
+                result.add(new OutboxEntry(entry));
+            }
+        }
+        return result;
+    }
+
+    private OutboxEntry newEntry(OutboxEntry.Type type, String connectionName, Run<?, ?> build, PullRequest pullRequest,
+                                 String body, boolean removeSourceBranch) {
+        long now = System.currentTimeMillis();
+        OutboxEntry entry = new OutboxEntry();
+        entry.setId(UUID.randomUUID().toString());
+        entry.setType(type);
+        entry.setStatus(OutboxEntry.Status.PENDING);
+        entry.setConnectionName(connectionName);
+        entry.setBuildId(build == null ? null : build.getExternalizableId());
+        entry.setPullRequest(pullRequest);
+        entry.setBody(body);
+        entry.setRemoveSourceBranch(removeSourceBranch);
+        entry.setCreatedAt(now);
+        entry.setNextAttemptAt(now);
+        return entry;
+    }
+
+    private synchronized OutboxEntry enqueue(OutboxEntry entry) {
+        entries.put(entry.getId(), entry);
+        append(entry);
+        wakeUp();
+        return new OutboxEntry(entry);
+    }
+
+    /**
+     * @return the due entries in the order they were enqueued, without the entries on a pull request that has an
+     *         earlier entry waiting for its next attempt
+     */
+    private synchronized List<OutboxEntry> getDueEntries() {
+        long now = System.currentTimeMillis();
+        List<OutboxEntry> result = new ArrayList<>();
+        Set<String> waiting = new HashSet<>();
+        for (OutboxEntry entry : entries.values()) {
+            if (entry.getStatus() != OutboxEntry.Status.PENDING) {
+                continue;
+            }
+            String key = getPullRequestKey(entry);
+            if (entry.getNextAttemptAt() > now) {
+                waiting.add(key);
+            } else if (!waiting.contains(key)) {
+                result.add(new OutboxEntry(entry));
+                if (result.size() == MAX_CONCURRENT_DELIVERIES) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delivers all due entries. The entries of a round on different pull requests are sent concurrently, the entries
+     * on the same pull request in the order they were enqueued: each one after the previous one was delivered and not
+     * at all if it failed. Only consecutive notes are sent together if the client keeps their order, so they can be
+     * combined by a {@link com.gitee.jenkins.gitee.api.impl.CoalescingGiteeClient}.
+     */
+    private void dispatch() {
+        List<OutboxEntry> due;
+        while (!(due = getDueEntries()).isEmpty()) {
+            Map<OutboxEntry, ListenableFuture<Void>> deliveries = new LinkedHashMap<>();
+            Map<String, Sequence> sequences = new HashMap<>();
+            for (OutboxEntry entry : due) {
+                AsyncGiteeClient client = getClient(entry.getConnectionName());
+                if (client == null) {
+                    onFailure(entry.getId(), "No Gitee connection '" + entry.getConnectionName() + "' configured", false);
+                    continue;
+                }
+                if (entry.getExpiresAt() != 0 && entry.getExpiresAt() < System.currentTimeMillis()) {
+                    // e.g. queued before a long downtime
+                    onFailure(entry.getId(), "Expired", true);
+                    continue;
+                }
+                String key = getPullRequestKey(entry);
+                Sequence sequence = sequences.get(key);
+                if (sequence == null) {
+                    sequence = new Sequence();
+                    sequences.put(key, sequence);
+                }
+                deliveries.put(entry, sequence.add(client, entry));
+            }
+            long deadline = System.currentTimeMillis() + ROUND_TIMEOUT_MILLIS;
+            for (Map.Entry<OutboxEntry, ListenableFuture<Void>> delivery : deliveries.entrySet()) {
+                String id = delivery.getKey().getId();
+                try {
+                    delivery.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    onDelivered(id);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (TimeoutException e) {
+                    // the entries after it on the pull request are deferred
+                    delivery.getValue().cancel(false);
+                    onFailure(id, "Timed out after " + TimeUnit.MILLISECONDS.toMinutes(ROUND_TIMEOUT_MILLIS) + " minutes", false);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof DeferredException) {
+                        // an earlier entry on the pull request failed, this one waits for its next attempt
+                        continue;
+                    }
+                    if (cause instanceof WebApplicationException) {
+                        Response response = ((WebApplicationException) cause).getResponse();
+                        int status = response == null ? 0 : response.getStatus();
+                        boolean rateLimited = response != null
+                            && GiteeRateLimiter.isRateLimited(status, response.getHeaderString(GiteeRateLimiter.RATE_LIMIT_REMAINING));
+                        // client errors other than timeouts and throttling will not go away by retrying
+                        boolean permanent = status >= 400 && status < 500 && status != 408 && !rateLimited;
+                        onFailure(id, getMessage(cause), permanent);
+                    } else {
+                        onFailure(id, getMessage(cause), false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a future completed when the entry was delivered after the previous delivery succeeded, failed with a
+     *         {@link DeferredException} if the previous delivery failed
+     */
+    private ListenableFuture<Void> deliverAfter(ListenableFuture<?> previous, final AsyncGiteeClient client,
+                                                final OutboxEntry entry) {
+        if (previous == null) {
+            return deliver(client, entry);
+        }
+        final SettableFuture<Void> result = SettableFuture.create();
+        Futures.addCallback(previous, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object ignored) {
+                Futures.addCallback(deliver(client, entry), new FutureCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void delivered) {
+                        result.set(null);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        result.setException(t);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.setException(new DeferredException());
+            }
+        });
+        return result;
+    }
+
+    private ListenableFuture<Void> deliver(AsyncGiteeClient client, OutboxEntry entry) {
+        switch (entry.getType()) {
+            case NOTE:
+                return client.createPullRequestNote(entry.getPullRequest(), entry.getBody());
+            case ACCEPT:
+                return client.acceptPullRequest(entry.getPullRequest(), entry.getBody(), entry.isRemoveSourceBranch());
+            default:
+                return Futures.immediateFailedFuture(new IllegalStateException("Unknown outbox entry type: " + entry.getType()));
+        }
+    }
+
+    private synchronized void onDelivered(String id) {
+        OutboxEntry entry = entries.remove(id);
+        if (entry != null) {
+            entry.setStatus(OutboxEntry.Status.DELIVERED);
+            entry.setAttempts(entry.getAttempts() + 1);
+            append(entry);
+            deliveredCount.incrementAndGet();
+            LOGGER.log(Level.FINE, "Delivered {0}", entry);
+        }
+    }
+
+    private synchronized void onFailure(String id, String error, boolean permanent) {
+        OutboxEntry entry = entries.get(id);
+        if (entry == null || entry.getStatus() != OutboxEntry.Status.PENDING) {
+            // discarded while it was being delivered
+            return;
+        }
+        int attempts = entry.getAttempts() + 1;
+        entry.setAttempts(attempts);
+        entry.setLastError(error);
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempts - 1, 16));
+        if (entry.getExpiresAt() != 0 && System.currentTimeMillis() + backoff > entry.getExpiresAt()) {
+            entry.setLastError(error + " (not retried, the pull request may have moved past " + entry.getSha() + " by now)");
+            permanent = true;
+        }
+        if (permanent || attempts >= MAX_ATTEMPTS) {
+            entry.setStatus(OutboxEntry.Status.FAILED);
+            LOGGER.log(Level.WARNING, "Giving up on {0} after {1} attempt(s): {2}", toArray(entry, attempts, entry.getLastError()));
+        } else {
+            entry.setNextAttemptAt(System.currentTimeMillis() + backoff);
+            retriedCount.incrementAndGet();
+            LOGGER.log(Level.INFO, "Failed to deliver {0}, retrying in {1} ms: {2}", toArray(entry, backoff, error));
+        }
+        append(entry);
+    }
+
+    private void wakeUp() {
+        if (dispatcher != null) {
+            dispatcher.execute(dispatchTask);
+        }
+    }
+
+    private synchronized void startDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "Gitee outbox dispatcher"));
+            dispatcher.scheduleWithFixedDelay(dispatchTask, 0, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private synchronized void load() {
+        File journal = getJournal();
+        if (journal == null || !journal.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), Charsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    OutboxEntry entry = JsonUtil.read(line, OutboxEntry.class);
+                    if (entry.getStatus() == OutboxEntry.Status.PENDING || entry.getStatus() == OutboxEntry.Status.FAILED) {
+                        entries.put(entry.getId(), entry);
+                    } else {
+                        entries.remove(entry.getId());
+                    }
+                } catch (RuntimeException e) {
+                    // a record cut short by a crash, the operation before it is still complete
+                    LOGGER.log(Level.WARNING, "Skipping unreadable outbox record in {0}", journal);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read the Gitee outbox journal " + journal, e);
+            return;
+        }
+        LOGGER.log(Level.INFO, "Loaded {0} Gitee outbox entries", entries.size());
+        compact();
+    }
+
+    private void append(OutboxEntry entry) {
+        File journal = getJournal();
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.getParentFile().mkdirs();
+            try (FileOutputStream out = new FileOutputStream(journal, true)) {
+                out.write((JsonUtil.toJson(entry) + "\n").getBytes(Charsets.UTF_8));
+                out.getFD().sync();
+            }
+            journalRecords++;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write " + entry + " to the Gitee outbox journal, it will not survive a restart", e);
+        }
+        if (journalRecords > COMPACT_THRESHOLD && journalRecords > 2 * entries.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the entries still in the outbox.
+     */
+    private void compact() {
+        File journal = getJournal();
+        if (journal == null) {
+            return;
+        }
+        File compacted = new File(journal.getParentFile(), JOURNAL + ".tmp");
+        try {
+            journal.getParentFile().mkdirs();
+            try (FileOutputStream out = new FileOutputStream(compacted)) {
+                for (OutboxEntry entry : entries.values()) {
+                    out.write((JsonUtil.toJson(entry) + "\n").getBytes(Charsets.UTF_8));
+                }
+                out.getFD().sync();
+            }
+            Files.move(compacted.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalRecords = entries.size();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to compact the Gitee outbox journal " + journal, e);
+        }
+    }
+
+    private File getJournal() {
+        Jenkins jenkins = Jenkins.getInstance();
+        return jenkins == null ? null : new File(new File(jenkins.getRootDir(), DIRECTORY), JOURNAL);
+    }
+
+    private AsyncGiteeClient getClient(String connectionName) {
+        Jenkins jenkins = Jenkins.getInstance();
+        GiteeConnectionConfig connectionConfig = jenkins == null ? null : (GiteeConnectionConfig) jenkins.getDescriptor(GiteeConnectionConfig.class);
+        return connectionConfig == null ? null : connectionConfig.getAsyncClient(connectionName);
+    }
+
+    private static String getPullRequestKey(OutboxEntry entry) {
+        PullRequest pullRequest = entry.getPullRequest();
+        if (pullRequest == null) {
+            return entry.getId();
+        }
+        return entry.getConnectionName() + "/" + pullRequest.getRepoOwner() + "/" + pullRequest.getRepoPath() + "!" + pullRequest.getIid();
+    }
+
+    private static String getMessage(Throwable e) {
+        return e.getMessage() == null ? e.toString() : e.getMessage();
+    }
+
+    /**
+     * The deliveries of a round on one pull request.
+     */
+    private final class Sequence {
+        // the delivery the next entry waits for
+        private ListenableFuture<?> previous;
+        // the notes sent together after the previous delivery
+        private final List<ListenableFuture<Void>> notes = new ArrayList<>();
+
+        private ListenableFuture<Void> add(AsyncGiteeClient client, OutboxEntry entry) {
+            if (entry.getType() == OutboxEntry.Type.NOTE && client.isOrderingNotes()) {
+                ListenableFuture<Void> delivery = deliverAfter(previous, client, entry);
+                notes.add(delivery);
+                return delivery;
+            }
+            if (!notes.isEmpty()) {
+                previous = Futures.allAsList(notes);
+                notes.clear();
+            }
+            ListenableFuture<Void> delivery = deliverAfter(previous, client, entry);
+            previous = delivery;
+            return delivery;
+        }
+    }
+
+    /**
+     * Defers an entry until the entry before it on the same pull request has been delivered.
+     */
+    private static final class DeferredException extends Exception {
+        private DeferredException() {
+            super("Waiting for an earlier entry on the same pull request");
+        }
+    }
+}
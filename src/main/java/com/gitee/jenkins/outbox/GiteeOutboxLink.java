@@ -0,0 +1,54 @@
+package com.gitee.jenkins.outbox;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Lists the pending and failed deliveries of the {@link GiteeOutbox} on the "Manage Jenkins" page.
+ */
+@Extension
+public class GiteeOutboxLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/gitee/images/24x24/gitlab.png";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "gitee-outbox";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.GiteeOutboxLink_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.GiteeOutboxLink_Description();
+    }
+
+    public GiteeOutbox getOutbox() {
+        return GiteeOutbox.get();
+    }
+
+    @RequirePOST
+    public HttpResponse doRetry(@QueryParameter String id) {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        GiteeOutbox.get().retry(id);
+        return HttpResponses.redirectToDot();
+    }
+
+    @RequirePOST
+    public HttpResponse doDiscard(@QueryParameter String id) {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        GiteeOutbox.get().discard(id);
+        return HttpResponses.redirectToDot();
+    }
+}
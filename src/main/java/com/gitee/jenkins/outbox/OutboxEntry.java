@@ -0,0 +1,209 @@
+package com.gitee.jenkins.outbox;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.util.Date;
+
+/**
+ * An outbound Gitee API operation in the {@link GiteeOutbox}.
+ * <p>
+ * Every change of an entry is appended to the journal as a complete copy, the last copy of an id wins on replay.
+ */
+public class OutboxEntry {
+
+    public enum Type {
+        NOTE, ACCEPT
+    }
+
+    public enum Status {
+        PENDING, FAILED, DELIVERED, DISCARDED
+    }
+
+    private String id;
+    private Type type;
+    private Status status;
+    private String connectionName;
+    private String buildId;
+    private PullRequest pullRequest;
+    private String body;
+    private boolean removeSourceBranch;
+    private String sha;
+    private long createdAt;
+    private long expiresAt;
+    private int attempts;
+    private long nextAttemptAt;
+    private String lastError;
+
+    public OutboxEntry() { /* default-constructor for the journal */ }
+
+    OutboxEntry(OutboxEntry entry) {
+        this.id = entry.id;
+        this.type = entry.type;
+        this.status = entry.status;
+        this.connectionName = entry.connectionName;
+        this.buildId = entry.buildId;
+        this.pullRequest = entry.pullRequest;
+        this.body = entry.body;
+        this.removeSourceBranch = entry.removeSourceBranch;
+        this.sha = entry.sha;
+        this.createdAt = entry.createdAt;
+        this.expiresAt = entry.expiresAt;
+        this.attempts = entry.attempts;
+        this.nextAttemptAt = entry.nextAttemptAt;
+        this.lastError = entry.lastError;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getConnectionName() {
+        return connectionName;
+    }
+
+    public void setConnectionName(String connectionName) {
+        this.connectionName = connectionName;
+    }
+
+    /**
+     * @return the {@link hudson.model.Run#getExternalizableId() externalizable id} of the build that queued the entry
+     */
+    public String getBuildId() {
+        return buildId;
+    }
+
+    public void setBuildId(String buildId) {
+        this.buildId = buildId;
+    }
+
+    public PullRequest getPullRequest() {
+        return pullRequest;
+    }
+
+    public void setPullRequest(PullRequest pullRequest) {
+        this.pullRequest = pullRequest;
+    }
+
+    /**
+     * @return the note for {@link Type#NOTE}, the merge commit message for {@link Type#ACCEPT}
+     */
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public boolean isRemoveSourceBranch() {
+        return removeSourceBranch;
+    }
+
+    public void setRemoveSourceBranch(boolean removeSourceBranch) {
+        this.removeSourceBranch = removeSourceBranch;
+    }
+
+    /**
+     * @return the head of the pull request the build tested for {@link Type#ACCEPT}, {@code null} if it is unknown
+     */
+    public String getSha() {
+        return sha;
+    }
+
+    public void setSha(String sha) {
+        this.sha = sha;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * @return when the entry must not be delivered anymore, {@code 0} if it does not expire
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(long nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @JsonIgnore
+    public Date getCreated() {
+        return new Date(createdAt);
+    }
+
+    @JsonIgnore
+    public Date getNextAttempt() {
+        return status == Status.PENDING ? new Date(nextAttemptAt) : null;
+    }
+
+    @JsonIgnore
+    public String getTarget() {
+        return pullRequest == null ? null : pullRequest.getRepoOwner() + "/" + pullRequest.getRepoPath() + "!" + pullRequest.getIid();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+            .append("id", id)
+            .append("type", type)
+            .append("status", status)
+            .append("connectionName", connectionName)
+            .append("buildId", buildId)
+            .append("sha", sha)
+            .append("attempts", attempts)
+            .toString();
+    }
+}
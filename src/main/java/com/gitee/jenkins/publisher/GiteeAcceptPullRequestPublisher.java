@@ -1,8 +1,9 @@
 package com.gitee.jenkins.publisher;
 
 
-import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.cause.GiteeWebHookCause;
 import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.outbox.GiteeOutbox;
 import hudson.Extension;
 import hudson.model.AbstractProject;
 import hudson.model.Result;
@@ -13,16 +14,10 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-import javax.ws.rs.ProcessingException;
-import javax.ws.rs.WebApplicationException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 /**
  * @author Robin Müller
  */
 public class GiteeAcceptPullRequestPublisher extends PullRequestNotifier {
-    private static final Logger LOGGER = Logger.getLogger(GiteeAcceptPullRequestPublisher.class.getName());
 
     @DataBoundConstructor
     public GiteeAcceptPullRequestPublisher() { }
@@ -46,14 +41,12 @@ public class GiteeAcceptPullRequestPublisher extends PullRequestNotifier {
     }
 
     @Override
-    protected void perform(Run<?, ?> build, TaskListener listener, GiteeClient client, PullRequest pullRequest) {
-        try {
-            if (build.getResult() == Result.SUCCESS) {
-                client.acceptPullRequest(pullRequest, "Pull Request accepted by jenkins build success", false);
-            }
-        } catch (WebApplicationException | ProcessingException e) {
-            listener.getLogger().printf("Failed to accept pull request for project '%s': %s%n", pullRequest.getProjectId(), e.getMessage());
-            LOGGER.log(Level.SEVERE, String.format("Failed to accept pull request for project '%s'", pullRequest.getProjectId()), e);
+    protected void perform(Run<?, ?> build, TaskListener listener, String connectionName, PullRequest pullRequest) {
+        if (build.getResult() == Result.SUCCESS) {
+            GiteeWebHookCause cause = build.getCause(GiteeWebHookCause.class);
+            String sha = cause == null ? null : cause.getData().getLastCommit();
+            GiteeOutbox.get().enqueueAccept(connectionName, build, pullRequest, sha, "Pull Request accepted by jenkins build success", false);
+            listener.getLogger().printf("Queued acceptance of pull request for project '%s'%n", pullRequest.getProjectId());
         }
     }
 }
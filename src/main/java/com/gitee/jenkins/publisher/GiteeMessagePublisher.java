@@ -1,8 +1,8 @@
 package com.gitee.jenkins.publisher;
 
 
-import com.gitee.jenkins.gitee.api.GiteeClient;
 import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.outbox.GiteeOutbox;
 import com.gitee.jenkins.trigger.GiteePushTrigger;
 import hudson.Extension;
 import hudson.Util;
@@ -16,8 +16,6 @@ import jenkins.model.ParameterizedJobMixIn;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
-import javax.ws.rs.ProcessingException;
-import javax.ws.rs.WebApplicationException;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Map;
@@ -174,14 +172,10 @@ public class GiteeMessagePublisher extends PullRequestNotifier {
     }
 
     @Override
-    protected void perform(Run<?, ?> build, TaskListener listener, GiteeClient client, PullRequest pullRequest) {
-        try {
-            if (!onlyForFailure || build.getResult() == Result.FAILURE || build.getResult() == Result.UNSTABLE) {
-                client.createPullRequestNote(pullRequest, getNote(build, listener));
-            }
-        } catch (WebApplicationException | ProcessingException e) {
-            listener.getLogger().printf("Failed to add comment on Pull Request for project '%s': %s%n", pullRequest.getProjectId(), e.getMessage());
-            LOGGER.log(Level.SEVERE, String.format("Failed to add comment on Pull Request for project '%s'", pullRequest.getProjectId()), e);
+    protected void perform(Run<?, ?> build, TaskListener listener, String connectionName, PullRequest pullRequest) {
+        if (!onlyForFailure || build.getResult() == Result.FAILURE || build.getResult() == Result.UNSTABLE) {
+            GiteeOutbox.get().enqueueNote(connectionName, build, pullRequest, getNote(build, listener));
+            listener.getLogger().printf("Queued comment on Pull Request for project '%s'%n", pullRequest.getProjectId());
         }
     }
 
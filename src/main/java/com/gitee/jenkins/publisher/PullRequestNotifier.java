@@ -1,7 +1,7 @@
 package com.gitee.jenkins.publisher;
 
 import com.gitee.jenkins.cause.GiteeWebHookCause;
-import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.connection.GiteeConnectionProperty;
 import com.gitee.jenkins.gitee.api.model.PullRequest;
 import hudson.Launcher;
 import hudson.matrix.MatrixAggregatable;
@@ -13,11 +13,10 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
+import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 
-import static com.gitee.jenkins.connection.GiteeConnectionProperty.getClient;
-
 /**
  * @author Robin Müller
  */
@@ -28,15 +27,15 @@ public abstract class PullRequestNotifier extends Notifier implements MatrixAggr
 
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
-        GiteeClient client = getClient(build);
-        if (client == null) {
+        GiteeConnectionProperty connectionProperty = build.getParent().getProperty(GiteeConnectionProperty.class);
+        if (connectionProperty == null || StringUtils.isEmpty(connectionProperty.getGiteeConnection())) {
             listener.getLogger().println("No Gitee connection configured");
             return true;
         }
 
         PullRequest pullRequest = getPullRequest(build);
         if (pullRequest != null) {
-            perform(build, listener, client, pullRequest);
+            perform(build, listener, connectionProperty.getGiteeConnection(), pullRequest);
         }
         return true;
     }
@@ -51,7 +50,10 @@ public abstract class PullRequestNotifier extends Notifier implements MatrixAggr
         };
     }
 
-    protected abstract void perform(Run<?, ?> build, TaskListener listener, GiteeClient client, PullRequest pullRequest);
+    /**
+     * Queues the operation of the notifier in the {@link com.gitee.jenkins.outbox.GiteeOutbox}, it is delivered after the build.
+     */
+    protected abstract void perform(Run<?, ?> build, TaskListener listener, String connectionName, PullRequest pullRequest);
 
     PullRequest getPullRequest(Run<?, ?> run) {
         GiteeWebHookCause cause = run.getCause(GiteeWebHookCause.class);
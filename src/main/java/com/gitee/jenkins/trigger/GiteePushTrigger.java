@@ -51,6 +51,7 @@ import static com.gitee.jenkins.trigger.handler.pull.PullRequestHookTriggerHandl
 import static com.gitee.jenkins.trigger.handler.note.NoteHookTriggerHandlerFactory.newNoteHookTriggerHandler;
 import static com.gitee.jenkins.trigger.handler.pipeline.PipelineHookTriggerHandlerFactory.newPipelineHookTriggerHandler;
 import static com.gitee.jenkins.trigger.handler.push.PushHookTriggerHandlerFactory.newPushHookTriggerHandler;
+import static com.gitee.jenkins.trigger.filter.ChangedPathFilterFactory.newChangedPathFilter;
 
 
 /**
@@ -96,6 +97,9 @@ public class GiteePushTrigger extends Trigger<Job<?, ?>> {
     private boolean cancelPendingBuildsOnUpdate;
     private boolean cancelIncompleteBuildOnSamePullRequest;
     private boolean ignorePullRequestConflicts;
+    private int coalescingWindow;
+    private String includeChangedPathsSpec;
+    private String excludeChangedPathsSpec;
 
     private transient BranchFilter branchFilter;
     private transient PushHookTriggerHandler pushHookTriggerHandler;
@@ -342,6 +346,18 @@ public class GiteePushTrigger extends Trigger<Job<?, ?>> {
         return ignorePullRequestConflicts;
     }
 
+    public int getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    public String getIncludeChangedPathsSpec() {
+        return includeChangedPathsSpec;
+    }
+
+    public String getExcludeChangedPathsSpec() {
+        return excludeChangedPathsSpec;
+    }
+
     @DataBoundSetter
     public void setTriggerOnPush(boolean triggerOnPush) {
         this.triggerOnPush = triggerOnPush;
@@ -504,6 +520,21 @@ public class GiteePushTrigger extends Trigger<Job<?, ?>> {
         this.ignorePullRequestConflicts = ignorePullRequestConflicts;
     }
 
+    @DataBoundSetter
+    public void setCoalescingWindow(int coalescingWindow) {
+        this.coalescingWindow = Math.max(0, coalescingWindow);
+    }
+
+    @DataBoundSetter
+    public void setIncludeChangedPathsSpec(String includeChangedPathsSpec) {
+        this.includeChangedPathsSpec = includeChangedPathsSpec;
+    }
+
+    @DataBoundSetter
+    public void setExcludeChangedPathsSpec(String excludeChangedPathsSpec) {
+        this.excludeChangedPathsSpec = excludeChangedPathsSpec;
+    }
+
     // executes when the Trigger receives a push request
     public void onPost(final PushHook hook) {
         if (branchFilter == null) {
@@ -559,10 +590,12 @@ public class GiteePushTrigger extends Trigger<Job<?, ?>> {
 				triggerOnUpdatePullRequest, triggerOnAcceptedPullRequest, triggerOnClosedPullRequest,
 				skipWorkInProgressPullRequest, triggerOnApprovedPullRequest, triggerOnTestedPullRequest, cancelPendingBuildsOnUpdate, ciSkipFroTestNotRequired,
             cancelIncompleteBuildOnSamePullRequest,
-            ignorePullRequestConflicts
+            ignorePullRequestConflicts,
+            coalescingWindow
         );
         noteHookTriggerHandler = newNoteHookTriggerHandler(triggerOnCommitComment, triggerOnNoteRequest, noteRegex, ciSkipFroTestNotRequired, cancelIncompleteBuildOnSamePullRequest, ignorePullRequestConflicts);
-        pushHookTriggerHandler = newPushHookTriggerHandler(triggerOnPush, skipWorkInProgressPullRequest);
+        pushHookTriggerHandler = newPushHookTriggerHandler(triggerOnPush, skipWorkInProgressPullRequest, coalescingWindow,
+                                                           newChangedPathFilter(includeChangedPathsSpec, excludeChangedPathsSpec));
         pipelineTriggerHandler = newPipelineHookTriggerHandler(triggerOnPipelineEvent);
     }
 
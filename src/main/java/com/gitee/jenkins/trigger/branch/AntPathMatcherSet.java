@@ -10,7 +10,7 @@ import java.util.HashSet;
  */
 class AntPathMatcherSet extends HashSet<String> {
 
-    private transient final AntPathMatcher matcher = new AntPathMatcher();
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
 
     public AntPathMatcherSet(Collection<? extends String> c) {
         super(c);
@@ -19,7 +19,7 @@ class AntPathMatcherSet extends HashSet<String> {
     @Override
     public boolean contains(Object o) {
         for (String s : this) {
-            if (matcher.match(o.toString(), s)) {
+            if (MATCHER.match(o.toString(), s)) {
                 return true;
             }
         }
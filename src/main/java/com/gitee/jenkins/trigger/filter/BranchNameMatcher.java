@@ -0,0 +1,104 @@
+package com.gitee.jenkins.trigger.filter;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable matcher for a comma separated list of Ant style branch (or path) specs, compiled once per filter.
+ * Exact names are looked up in a set and {@code prefix/**} specs by walking the path segments of the branch name,
+ * only the remaining specs go through the {@link AntPathMatcher}.
+ */
+final class BranchNameMatcher {
+
+    private static final AntPathMatcher ANT_PATH_MATCHER = new AntPathMatcher();
+    private static final String ANY_SUFFIX = "/**";
+
+    private final List<String> patterns;
+    private final Set<String> literals;
+    private final Set<String> prefixes;
+    private final List<String> antPatterns;
+
+    private BranchNameMatcher(List<String> patterns) {
+        ImmutableSet.Builder<String> literals = ImmutableSet.builder();
+        ImmutableSet.Builder<String> prefixes = ImmutableSet.builder();
+        ImmutableList.Builder<String> antPatterns = ImmutableList.builder();
+        for (String pattern : patterns) {
+            if (isLiteral(pattern)) {
+                literals.add(pattern);
+            } else if (pattern.endsWith(ANY_SUFFIX) && isLiteral(pattern.substring(0, pattern.length() - ANY_SUFFIX.length()))) {
+                prefixes.add(pattern.substring(0, pattern.length() - ANY_SUFFIX.length()));
+            } else {
+                antPatterns.add(pattern);
+            }
+        }
+        this.patterns = patterns;
+        this.literals = literals.build();
+        this.prefixes = prefixes.build();
+        this.antPatterns = antPatterns.build();
+    }
+
+    static BranchNameMatcher compile(String commaSeparatedPatterns) {
+        if (commaSeparatedPatterns == null) {
+            return new BranchNameMatcher(ImmutableList.<String>of());
+        }
+        return new BranchNameMatcher(ImmutableList.copyOf(Splitter.on(',').omitEmptyStrings().trimResults().split(commaSeparatedPatterns)));
+    }
+
+    boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    boolean matches(String branchName) {
+        if (!isPlain(branchName)) {
+            return matchesAny(patterns, branchName);
+        }
+        if (literals.contains(branchName)) {
+            return true;
+        }
+        if (!prefixes.isEmpty()) {
+            for (int i = branchName.indexOf('/'); i >= 0; i = branchName.indexOf('/', i + 1)) {
+                if (prefixes.contains(branchName.substring(0, i))) {
+                    return true;
+                }
+            }
+            if (prefixes.contains(branchName)) {
+                return true;
+            }
+        }
+        return matchesAny(antPatterns, branchName);
+    }
+
+    private static boolean matchesAny(List<String> patterns, String branchName) {
+        for (String pattern : patterns) {
+            if (ANT_PATH_MATCHER.match(pattern, branchName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return isPlain(pattern) && pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0 && pattern.indexOf('{') < 0;
+    }
+
+    /**
+     * The Ant matcher ignores empty path segments and surrounding white space of segments,
+     * names that could be affected by this are always handed to it.
+     */
+    private static boolean isPlain(String name) {
+        if (name == null || name.isEmpty() || name.endsWith("/") || name.contains("//")) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.isWhitespace(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+package com.gitee.jenkins.trigger.filter;
+
+import java.util.Collection;
+
+public interface ChangedPathFilter {
+    boolean isChangeAllowed(Collection<String> changedPaths);
+}
@@ -0,0 +1,15 @@
+package com.gitee.jenkins.trigger.filter;
+
+import org.apache.commons.lang.StringUtils;
+
+public final class ChangedPathFilterFactory {
+
+    private ChangedPathFilterFactory() { }
+
+    public static ChangedPathFilter newChangedPathFilter(String includeChangedPathsSpec, String excludeChangedPathsSpec) {
+        if (StringUtils.isBlank(includeChangedPathsSpec) && StringUtils.isBlank(excludeChangedPathsSpec)) {
+            return new NopChangedPathFilter();
+        }
+        return new ChangedPathFilterImpl(includeChangedPathsSpec, excludeChangedPathsSpec);
+    }
+}
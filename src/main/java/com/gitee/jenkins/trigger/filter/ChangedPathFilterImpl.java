@@ -0,0 +1,27 @@
+package com.gitee.jenkins.trigger.filter;
+
+import java.util.Collection;
+
+/**
+ * Allows a change if at least one of the changed paths is included and not excluded by the Ant style path specs.
+ */
+class ChangedPathFilterImpl implements ChangedPathFilter {
+
+    private final BranchNameMatcher includedPaths;
+    private final BranchNameMatcher excludedPaths;
+
+    public ChangedPathFilterImpl(String includedPaths, String excludedPaths) {
+        this.includedPaths = BranchNameMatcher.compile(includedPaths);
+        this.excludedPaths = BranchNameMatcher.compile(excludedPaths);
+    }
+
+    @Override
+    public boolean isChangeAllowed(Collection<String> changedPaths) {
+        for (String path : changedPaths) {
+            if (!excludedPaths.matches(path) && (includedPaths.isEmpty() || includedPaths.matches(path))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,23 +1,16 @@
 package com.gitee.jenkins.trigger.filter;
 
-import com.google.common.base.Splitter;
-import org.springframework.util.AntPathMatcher;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 /**
  * @author Robin Müller
  */
 class NameBasedFilter implements BranchFilter {
 
-    private final List<String> includedBranches;
-    private final List<String> excludedBranches;
+    private final BranchNameMatcher includedBranches;
+    private final BranchNameMatcher excludedBranches;
 
     public NameBasedFilter(String includedBranches, String excludedBranches) {
-        this.includedBranches = convert(includedBranches);
-        this.excludedBranches = convert(excludedBranches);
+        this.includedBranches = BranchNameMatcher.compile(includedBranches);
+        this.excludedBranches = BranchNameMatcher.compile(excludedBranches);
     }
 
     @Override
@@ -30,33 +23,10 @@ class NameBasedFilter implements BranchFilter {
     }
 
     private boolean isBranchNotExcluded(String branchName) {
-        AntPathMatcher matcher = new AntPathMatcher();
-        for (String excludePattern : excludedBranches) {
-            if (matcher.match(excludePattern, branchName)) {
-                return false;
-            }
-        }
-        return true;
+        return !excludedBranches.matches(branchName);
     }
 
     private boolean isBranchIncluded(String branchName) {
-        AntPathMatcher matcher = new AntPathMatcher();
-        for (String includePattern : includedBranches) {
-            if (matcher.match(includePattern, branchName)) {
-                return true;
-            }
-        }
-        return includedBranches.isEmpty();
-    }
-
-    private List<String> convert(String commaSeparatedString) {
-        if (commaSeparatedString == null)
-            return Collections.EMPTY_LIST;
-
-        ArrayList<String> result = new ArrayList<>();
-        for (String s : Splitter.on(',').omitEmptyStrings().trimResults().split(commaSeparatedString)) {
-            result.add(s);
-        }
-        return result;
+        return includedBranches.isEmpty() || includedBranches.matches(branchName);
     }
 }
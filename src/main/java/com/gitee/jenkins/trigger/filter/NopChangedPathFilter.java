@@ -0,0 +1,10 @@
+package com.gitee.jenkins.trigger.filter;
+
+import java.util.Collection;
+
+class NopChangedPathFilter implements ChangedPathFilter {
+    @Override
+    public boolean isChangeAllowed(Collection<String> changedPaths) {
+        return true;
+    }
+}
@@ -2,19 +2,39 @@ package com.gitee.jenkins.trigger.filter;
 
 import org.apache.commons.lang.StringUtils;
 
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 /**
  * @author Robin Müller
  */
 class RegexBasedFilter implements BranchFilter {
 
     private final String regex;
+    private final Pattern pattern;
 
     public RegexBasedFilter(String regex) {
         this.regex = regex;
+        this.pattern = compile(regex);
     }
 
     @Override
     public boolean isBranchAllowed(String branchName) {
-        return StringUtils.isEmpty(branchName) || StringUtils.isEmpty(regex) || branchName.matches(regex);
+        if (StringUtils.isEmpty(branchName) || StringUtils.isEmpty(regex)) {
+            return true;
+        }
+        // an invalid regex keeps failing on use, as before
+        return pattern == null ? branchName.matches(regex) : pattern.matcher(branchName).matches();
+    }
+
+    private static Pattern compile(String regex) {
+        if (StringUtils.isEmpty(regex)) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
     }
 }
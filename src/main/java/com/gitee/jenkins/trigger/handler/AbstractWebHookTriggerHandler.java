@@ -8,6 +8,7 @@ import com.gitee.jenkins.trigger.filter.BranchFilter;
 import com.gitee.jenkins.trigger.filter.BuildInstructionFilter;
 import com.gitee.jenkins.trigger.filter.PullRequestLabelFilter;
 import com.gitee.jenkins.util.LoggerUtil;
+import com.gitee.jenkins.util.RunningBuildIndex;
 import hudson.model.*;
 import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.RevisionParameterAction;
@@ -32,9 +33,22 @@ public abstract class AbstractWebHookTriggerHandler<H extends WebHook> implement
 
     private static final Logger LOGGER = Logger.getLogger(AbstractWebHookTriggerHandler.class.getName());
     protected PendingBuildsHandler pendingBuildsHandler = new PendingBuildsHandler();
+    protected QueuedBuildCoalescer queuedBuildCoalescer = new QueuedBuildCoalescer();
 
     @Override
     public void handle(Job<?, ?> job, H hook, BuildInstructionFilter buildInstructionFilter, boolean skipLastCommitHasBeenBuild, BranchFilter branchFilter, PullRequestLabelFilter pullRequestLabelFilter) {
+        // the cheap filters run first, the others may bind the large lists of the hook
+        String targetBranch = getTargetBranch(hook);
+        if (!branchFilter.isBranchAllowed(targetBranch)) {
+            LOGGER.log(Level.INFO, "branch {0} is not allowed", targetBranch);
+            return;
+        }
+
+        if (!isChangeAllowed(hook)) {
+            LOGGER.log(Level.INFO, "Skipping due to the changed path filter.");
+            return;
+        }
+
         if (isCiSkip(hook, buildInstructionFilter)) {
             LOGGER.log(Level.INFO, "Skipping due to ci-skip.");
             return;
@@ -45,15 +59,16 @@ public abstract class AbstractWebHookTriggerHandler<H extends WebHook> implement
             return;
         }
 
-        String targetBranch = getTargetBranch(hook);
-        if (branchFilter.isBranchAllowed(targetBranch)) {
-            LOGGER.log(Level.INFO, "{0} triggered for {1}.", LoggerUtil.toArray(job.getFullName(), getTriggerType()));
-            cancelPendingBuildsIfNecessary(job, hook);
+        LOGGER.log(Level.INFO, "{0} triggered for {1}.", LoggerUtil.toArray(job.getFullName(), getTriggerType()));
+        Action[] actions = createActions(job, hook);
+        int coalescingWindow = getCoalescingWindow(hook);
+        if (coalescingWindow > 0 && queuedBuildCoalescer.coalesce(job, actions)) {
             cancelIncompleteBuildIfNecessary(job, hook);
-            scheduleBuild(job, createActions(job, hook));
-        } else {
-            LOGGER.log(Level.INFO, "branch {0} is not allowed", targetBranch);
+            return;
         }
+        cancelPendingBuildsIfNecessary(job, hook);
+        cancelIncompleteBuildIfNecessary(job, hook);
+        scheduleBuild(job, actions, coalescingWindow);
     }
 
     protected abstract String getTriggerType();
@@ -61,6 +76,13 @@ public abstract class AbstractWebHookTriggerHandler<H extends WebHook> implement
     protected abstract boolean isCiSkip(H hook, BuildInstructionFilter buildInstructionFilter);
     protected abstract boolean isCommitSkip(Job<?, ?> job, H hook);
 
+    /**
+     * @return whether the changes of the hook match the changed path filter of the job
+     */
+    protected boolean isChangeAllowed(H hook) {
+        return true;
+    }
+
     protected Action[] createActions(Job<?, ?> job, H hook) {
         ArrayList<Action> actions = new ArrayList<>();
         actions.add(new CauseAction(new GiteeWebHookCause(retrieveCauseData(hook))));
@@ -75,6 +97,14 @@ public abstract class AbstractWebHookTriggerHandler<H extends WebHook> implement
         return actions.toArray(new Action[actions.size()]);
     }
 
+    /**
+     * @return the seconds a build of this hook waits in the queue for newer hooks of the same branch or pull request,
+     * 0 if the hook is not merged with others
+     */
+    protected int getCoalescingWindow(H hook) {
+        return 0;
+    }
+
     protected void cancelPendingBuildsIfNecessary(Job<?, ?> job, H hook) {}
 
     protected void cancelIncompleteBuildIfNecessary(Job<?, ?> job, H hook) {}
@@ -99,7 +129,11 @@ public abstract class AbstractWebHookTriggerHandler<H extends WebHook> implement
     }
 
     protected void scheduleBuild(Job<?, ?> job, Action[] actions) {
-        int projectBuildDelay = 0;
+        scheduleBuild(job, actions, 0);
+    }
+
+    private void scheduleBuild(Job<?, ?> job, Action[] actions, int minimumDelay) {
+        int projectBuildDelay = minimumDelay;
         if (job instanceof ParameterizedJobMixIn.ParameterizedJob) {
             ParameterizedJobMixIn.ParameterizedJob abstractProject = (ParameterizedJobMixIn.ParameterizedJob) job;
             if (abstractProject.getQuietPeriod() > projectBuildDelay) {
@@ -130,6 +164,19 @@ public abstract class AbstractWebHookTriggerHandler<H extends WebHook> implement
         return null;
     }
 
+    /**
+     * Aborts the running builds of the job that were triggered for the same source and target repository and ref.
+     */
+    protected void cancelIncompleteBuilds(Job<?, ?> job, String sourceRepoUrl, String targetRepoUrl, String ref) {
+        for (Run<?, ?> build : RunningBuildIndex.get().getBuilds(job, sourceRepoUrl, targetRepoUrl, ref)) {
+            try {
+                doStop(build);
+            } catch (ServletException | IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to abort incomplete build", e);
+            }
+        }
+    }
+
     protected void doStop(Run<?, ?> build) throws IOException, ServletException {
         if (build.isBuilding()) {
             if (build instanceof AbstractBuild) {
@@ -0,0 +1,112 @@
+package com.gitee.jenkins.trigger.handler;
+
+import com.gitee.jenkins.cause.CauseData;
+import com.gitee.jenkins.cause.GiteeWebHookCause;
+import com.gitee.jenkins.environment.ChangedPathsAction;
+import com.gitee.jenkins.util.LoggerUtil;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.Job;
+import hudson.model.Queue;
+import org.apache.commons.lang.ObjectUtils;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Merges a web hook into a build of the same branch or pull request that is still waiting in the queue,
+ * so that a burst of pushes results in one build of the newest revision.
+ */
+class QueuedBuildCoalescer {
+
+    private static final Logger LOGGER = Logger.getLogger(QueuedBuildCoalescer.class.getName());
+
+    /**
+     * @return {@code true} if the actions replaced the ones of a queued build and nothing needs to be scheduled
+     */
+    boolean coalesce(final Job<?, ?> job, final Action[] actions) {
+        final CauseData causeData = getCauseData(actions);
+        if (causeData == null) {
+            return false;
+        }
+        final boolean[] coalesced = new boolean[1];
+        Queue.withLock(new Runnable() {
+            @Override
+            public void run() {
+                for (Queue.Item item : QueuedBuildIndex.get().getItems(job, causeData.getSourceProjectId(), causeData.getBranch())) {
+                    if (isReplaceable(item) && isSameSource(causeData, getCauseData(item))) {
+                        for (Action action : actions) {
+                            if (!(action instanceof ChangedPathsAction)) {
+                                item.replaceAction(action);
+                            }
+                        }
+                        mergeChangedPaths(item, actions);
+                        LOGGER.log(Level.INFO, "Replaced revision of queued build {0} of {1} with {2}",
+                                   LoggerUtil.toArray(item.getId(), job.getFullName(), causeData.getSha()));
+                        coalesced[0] = true;
+                        return;
+                    }
+                }
+            }
+        });
+        return coalesced[0];
+    }
+
+    /**
+     * The build of the queued item builds the changes of all merged pushes, they are only known if every push listed
+     * its changed paths.
+     */
+    private void mergeChangedPaths(Queue.Item item, Action[] actions) {
+        ChangedPathsAction queued = item.getAction(ChangedPathsAction.class);
+        if (queued == null) {
+            return;
+        }
+        for (Action action : actions) {
+            if (action instanceof ChangedPathsAction) {
+                item.replaceAction(queued.merge((ChangedPathsAction) action));
+                return;
+            }
+        }
+        item.getActions().remove(queued);
+    }
+
+    private boolean isReplaceable(Queue.Item item) {
+        // a pending item has already been handed to an executor
+        return !(item instanceof Queue.BuildableItem) || !((Queue.BuildableItem) item).isPending();
+    }
+
+    private boolean isSameSource(CauseData causeData, CauseData queued) {
+        if (queued == null || causeData.getActionType() != queued.getActionType()) {
+            return false;
+        }
+        if (causeData.getActionType() == CauseData.ActionType.MERGE) {
+            return ObjectUtils.equals(causeData.getTargetProjectId(), queued.getTargetProjectId())
+                && ObjectUtils.equals(causeData.getPullRequestIid(), queued.getPullRequestIid());
+        }
+        return ObjectUtils.equals(causeData.getSourceProjectId(), queued.getSourceProjectId())
+            && ObjectUtils.equals(causeData.getRef(), queued.getRef());
+    }
+
+    private CauseData getCauseData(Action[] actions) {
+        for (Action action : actions) {
+            if (action instanceof CauseAction) {
+                return getCauseData(((CauseAction) action).getCauses().toArray(new Cause[0]));
+            }
+        }
+        return null;
+    }
+
+    private CauseData getCauseData(Queue.Item item) {
+        return getCauseData(item.getCauses().toArray(new Cause[0]));
+    }
+
+    private CauseData getCauseData(Cause[] causes) {
+        for (Cause cause : causes) {
+            if (cause instanceof GiteeWebHookCause) {
+                return ((GiteeWebHookCause) cause).getData();
+            }
+        }
+        return null;
+    }
+}
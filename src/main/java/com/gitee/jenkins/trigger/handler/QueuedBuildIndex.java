@@ -0,0 +1,167 @@
+package com.gitee.jenkins.trigger.handler;
+
+import com.gitee.jenkins.cause.CauseData;
+import com.gitee.jenkins.cause.GiteeWebHookCause;
+import hudson.Extension;
+import hudson.model.Cause;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the queue items caused by a Gitee web hook, keyed by job full name, source project id and branch.
+ * Saves scanning the whole queue when looking for pending builds of a branch.
+ */
+public final class QueuedBuildIndex {
+
+    private static final QueuedBuildIndex INSTANCE = new QueuedBuildIndex();
+
+    private final Map<Key, Set<Long>> itemIds = new HashMap<>();
+    private final Map<Long, Key> keys = new HashMap<>();
+    private boolean initialized;
+
+    private QueuedBuildIndex() { }
+
+    public static QueuedBuildIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the queue items of the job that were caused by a web hook of the given source project and branch
+     */
+    List<Queue.Item> getItems(Job<?, ?> job, Integer sourceProjectId, String branch) {
+        Queue queue = Jenkins.getInstance().getQueue();
+        if (!isInitialized()) {
+            // items loaded from disk at start up are not announced to the listener; the queue lock is taken outside of ours
+            Queue.Item[] items = queue.getItems();
+            synchronized (this) {
+                for (Queue.Item item : items) {
+                    add(item);
+                }
+                initialized = true;
+            }
+        }
+        Set<Long> ids;
+        synchronized (this) {
+            ids = itemIds.get(new Key(job.getFullName(), sourceProjectId, branch));
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            ids = new HashSet<>(ids);
+        }
+        List<Queue.Item> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Queue.Item item = queue.getItem(id);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private synchronized boolean isInitialized() {
+        return initialized;
+    }
+
+    public synchronized int getItemCount() {
+        return keys.size();
+    }
+
+    private synchronized void add(Queue.Item item) {
+        Key key = keyOf(item);
+        if (key == null || keys.containsKey(item.getId())) {
+            return;
+        }
+        Set<Long> ids = itemIds.get(key);
+        if (ids == null) {
+            ids = new HashSet<>();
+            itemIds.put(key, ids);
+        }
+        ids.add(item.getId());
+        keys.put(item.getId(), key);
+    }
+
+    private synchronized void remove(Queue.Item item) {
+        Key key = keys.remove(item.getId());
+        if (key == null) {
+            return;
+        }
+        Set<Long> ids = itemIds.get(key);
+        if (ids != null) {
+            ids.remove(item.getId());
+            if (ids.isEmpty()) {
+                itemIds.remove(key);
+            }
+        }
+    }
+
+    private static Key keyOf(Queue.Item item) {
+        if (!(item.task instanceof Item)) {
+            return null;
+        }
+        for (Cause cause : item.getCauses()) {
+            if (cause instanceof GiteeWebHookCause) {
+                CauseData data = ((GiteeWebHookCause) cause).getData();
+                return new Key(((Item) item.task).getFullName(), data.getSourceProjectId(), data.getBranch());
+            }
+        }
+        return null;
+    }
+
+    private static final class Key {
+        private final String jobName;
+        private final Integer sourceProjectId;
+        private final String branch;
+
+        private Key(String jobName, Integer sourceProjectId, String branch) {
+            this.jobName = jobName;
+            this.sourceProjectId = sourceProjectId;
+            this.branch = branch;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return jobName.equals(that.jobName)
+                && (sourceProjectId == null ? that.sourceProjectId == null : sourceProjectId.equals(that.sourceProjectId))
+                && (branch == null ? that.branch == null : branch.equals(that.branch));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = jobName.hashCode();
+            result = 31 * result + (sourceProjectId != null ? sourceProjectId.hashCode() : 0);
+            result = 31 * result + (branch != null ? branch.hashCode() : 0);
+            return result;
+        }
+    }
+
+    @Extension
+    public static class Listener extends QueueListener {
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            INSTANCE.add(wi);
+        }
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            INSTANCE.remove(li);
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package com.gitee.jenkins.trigger.handler.note;
 
 import com.gitee.jenkins.cause.CauseData;
-import com.gitee.jenkins.cause.GiteeWebHookCause;
-import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.gitee.api.AsyncGiteeClient;
 import com.gitee.jenkins.gitee.api.model.PullRequest;
 import com.gitee.jenkins.gitee.hook.model.*;
 import com.gitee.jenkins.publisher.GiteeMessagePublisher;
@@ -17,14 +16,12 @@ import hudson.plugins.git.RevisionParameterAction;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.transport.URIish;
 
-import javax.servlet.ServletException;
-import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import static com.gitee.jenkins.cause.CauseDataBuilder.causeData;
-import static com.gitee.jenkins.connection.GiteeConnectionProperty.getClient;
+import static com.gitee.jenkins.connection.GiteeConnectionProperty.getAsyncClient;
 import static com.gitee.jenkins.trigger.handler.builder.generated.BuildStatusUpdateBuilder.buildStatusUpdate;
 
 /**
@@ -59,7 +56,7 @@ class NoteHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<NoteHook>
             if (!ignorePullRequestConflicts && objectAttributes != null && !objectAttributes.isMergeable()) {
                 LOGGER.log(Level.INFO, "This pull request can not be merge");
                 GiteeMessagePublisher publisher = GiteeMessagePublisher.getFromJob(job);
-                GiteeClient client = getClient(job);
+                AsyncGiteeClient client = getAsyncClient(job);
                 if (publisher != null && client != null) {
                     PullRequest pullRequest = new PullRequest(objectAttributes);
                     LOGGER.log(Level.INFO, "sending message to gitee.....");
@@ -98,38 +95,9 @@ class NoteHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<NoteHook>
             return;
         }
 
-        for (Run<?, ?> build : job.getBuilds()) {
-            if (!job.isBuilding()) {
-                break;
-            }
-
-            if (!build.isBuilding()) {
-                continue;
-            }
-
-            CauseAction causeAction = build.getAction(CauseAction.class);
-            GiteeWebHookCause giteeWebHookCause = null;
-            for (Cause cause : causeAction.getCauses()) {
-                if (cause instanceof GiteeWebHookCause) {
-                    giteeWebHookCause = (GiteeWebHookCause) cause;
-                    break;
-                }
-            }
-
-            if (giteeWebHookCause == null) {
-                continue;
-            }
-            CauseData causeData = giteeWebHookCause.getData();
-            if (causeData.getSourceRepoHttpUrl().equals(hook.getPullRequest().getSource().getGitHttpUrl())
-                && causeData.getTargetRepoHttpUrl().equals(hook.getPullRequest().getTarget().getGitHttpUrl())
-                && causeData.getRef().equals(hook.getPullRequest().getMergeReferenceName())) {
-                try {
-                    doStop(build);
-                } catch (ServletException | IOException e) {
-                    LOGGER.log(Level.WARNING, "Unable to abort incomplete build", e);
-                }
-            }
-        }
+        cancelIncompleteBuilds(job, hook.getPullRequest().getSource().getGitHttpUrl(),
+                               hook.getPullRequest().getTarget().getGitHttpUrl(),
+                               hook.getPullRequest().getMergeReferenceName());
     }
 
     @Override
@@ -206,6 +174,7 @@ class NoteHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<NoteHook>
                 .withTriggerPhrase(hook.getComment().getBody())
                 .withPathWithNamespace(hook.getPullRequest().getBase().getRepo().getPathWithNamespace())
                 .withJsonBody(hook.getJsonBody())
+                .withJsonBodyHash(hook.getJsonBodyHash())
                 .withNoteBody(hook.getComment().getBody())
                 .build();
     }
@@ -128,6 +128,7 @@ class PipelineHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<Pipel
                 .withFinishedAt(hook.getObjectAttributes().getFinishedAt()==null?"":hook.getObjectAttributes().getFinishedAt().toString())
                 .withBuildDuration(String.valueOf(hook.getObjectAttributes().getDuration()))
                 .withJsonBody(hook.getJsonBody())
+                .withJsonBodyHash(hook.getJsonBodyHash())
                 .build();
     }
 
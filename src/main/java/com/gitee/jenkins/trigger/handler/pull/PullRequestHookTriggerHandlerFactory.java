@@ -25,6 +25,24 @@ public final class PullRequestHookTriggerHandlerFactory {
                                                                                  boolean ciSkipFroTestNotRequired,
                                                                                  boolean cancelIncompleteBuildOnSamePullRequest,
                                                                                  boolean ignorePullRequestConflicts) {
+        return newPullRequestHookTriggerHandler(triggerOnOpenPullRequest, triggerOnUpdatePullRequest, triggerOnAcceptedPullRequest,
+                                                triggerOnClosedPullRequest, skipWorkInProgressPullRequest, triggerOnApprovedPullRequest,
+                                                triggerOnTestedPullRequest, cancelPendingBuildsOnUpdate, ciSkipFroTestNotRequired,
+                                                cancelIncompleteBuildOnSamePullRequest, ignorePullRequestConflicts, 0);
+    }
+
+    public static PullRequestHookTriggerHandler newPullRequestHookTriggerHandler(boolean triggerOnOpenPullRequest,
+                                                                                 String triggerOnUpdatePullRequest,
+                                                                                 boolean triggerOnAcceptedPullRequest,
+                                                                                 boolean triggerOnClosedPullRequest,
+                                                                                 boolean skipWorkInProgressPullRequest,
+                                                                                 boolean triggerOnApprovedPullRequest,
+                                                                                 boolean triggerOnTestedPullRequest,
+                                                                                 boolean cancelPendingBuildsOnUpdate,
+                                                                                 boolean ciSkipFroTestNotRequired,
+                                                                                 boolean cancelIncompleteBuildOnSamePullRequest,
+                                                                                 boolean ignorePullRequestConflicts,
+                                                                                 int coalescingWindow) {
         if (triggerOnOpenPullRequest
             || !("0".equals(triggerOnUpdatePullRequest) || "false".equals(triggerOnUpdatePullRequest))
             || triggerOnAcceptedPullRequest
@@ -50,7 +68,8 @@ public final class PullRequestHookTriggerHandlerFactory {
                 cancelPendingBuildsOnUpdate,
                 ciSkipFroTestNotRequired,
                 cancelIncompleteBuildOnSamePullRequest,
-                ignorePullRequestConflicts);
+                ignorePullRequestConflicts,
+                coalescingWindow);
         } else {
             return new NopPullRequestHookTriggerHandler();
         }
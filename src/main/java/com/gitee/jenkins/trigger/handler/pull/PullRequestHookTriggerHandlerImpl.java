@@ -2,7 +2,7 @@ package com.gitee.jenkins.trigger.handler.pull;
 
 import com.gitee.jenkins.cause.CauseData;
 import com.gitee.jenkins.cause.GiteeWebHookCause;
-import com.gitee.jenkins.gitee.api.GiteeClient;
+import com.gitee.jenkins.gitee.api.AsyncGiteeClient;
 import com.gitee.jenkins.gitee.api.model.PullRequest;
 import com.gitee.jenkins.gitee.hook.model.*;
 import com.gitee.jenkins.gitee.hook.model.Action;
@@ -14,14 +14,15 @@ import com.gitee.jenkins.trigger.filter.BuildInstructionFilter;
 import com.gitee.jenkins.trigger.filter.PullRequestLabelFilter;
 import com.gitee.jenkins.trigger.handler.AbstractWebHookTriggerHandler;
 import com.gitee.jenkins.util.BuildUtil;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import hudson.model.*;
 import hudson.plugins.git.GitSCM;
 import hudson.plugins.git.RevisionParameterAction;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.transport.URIish;
 
-import javax.servlet.ServletException;
-import java.io.IOException;
 import java.util.Collection;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,7 +32,8 @@ import java.util.logging.Logger;
 
 import static com.gitee.jenkins.cause.CauseDataBuilder.causeData;
 import static com.gitee.jenkins.trigger.handler.builder.generated.BuildStatusUpdateBuilder.buildStatusUpdate;
-import static com.gitee.jenkins.connection.GiteeConnectionProperty.getClient;
+import static com.gitee.jenkins.connection.GiteeConnectionProperty.getAsyncClient;
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
 
 /**
  * @author Robin Müller
@@ -49,12 +51,13 @@ class PullRequestHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<Pu
     private final boolean cancelPendingBuildsOnUpdate;
     private final boolean cancelIncompleteBuildOnSamePullRequest;
     private boolean ignorePullRequestConflicts;
+    private final int coalescingWindow;
 
     PullRequestHookTriggerHandlerImpl(Collection<State> allowedStates, boolean skipWorkInProgressPullRequest, boolean cancelPendingBuildsOnUpdate, boolean ciSkipFroTestNotRequired, boolean cancelIncompleteBuildOnSamePullRequest, boolean ignorePullRequestConflicts) {
-        this(allowedStates, EnumSet.allOf(Action.class), EnumSet.allOf(ActionDesc.class), skipWorkInProgressPullRequest, cancelPendingBuildsOnUpdate, ciSkipFroTestNotRequired, cancelIncompleteBuildOnSamePullRequest, ignorePullRequestConflicts);
+        this(allowedStates, EnumSet.allOf(Action.class), EnumSet.allOf(ActionDesc.class), skipWorkInProgressPullRequest, cancelPendingBuildsOnUpdate, ciSkipFroTestNotRequired, cancelIncompleteBuildOnSamePullRequest, ignorePullRequestConflicts, 0);
     }
 
-    PullRequestHookTriggerHandlerImpl(Collection<State> allowedStates, Collection<Action> allowedActions, Collection<ActionDesc> allowedActionDesces, boolean skipWorkInProgressPullRequest, boolean cancelPendingBuildsOnUpdate, boolean ciSkipFroTestNotRequired, boolean cancelIncompleteBuildOnSamePullRequest, boolean ignorePullRequestConflicts) {
+    PullRequestHookTriggerHandlerImpl(Collection<State> allowedStates, Collection<Action> allowedActions, Collection<ActionDesc> allowedActionDesces, boolean skipWorkInProgressPullRequest, boolean cancelPendingBuildsOnUpdate, boolean ciSkipFroTestNotRequired, boolean cancelIncompleteBuildOnSamePullRequest, boolean ignorePullRequestConflicts, int coalescingWindow) {
         this.allowedStates = allowedStates;
         this.allowedActions = allowedActions;
         this.allowedActionDesces = allowedActionDesces;
@@ -63,6 +66,7 @@ class PullRequestHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<Pu
         this.ciSkipFroTestNotRequired = ciSkipFroTestNotRequired;
         this.cancelIncompleteBuildOnSamePullRequest = cancelIncompleteBuildOnSamePullRequest;
         this.ignorePullRequestConflicts = ignorePullRequestConflicts;
+        this.coalescingWindow = coalescingWindow;
     }
 
     @Override
@@ -84,12 +88,24 @@ class PullRequestHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<Pu
                 if (!ignorePullRequestConflicts && !objectAttributes.isMergeable()) {
                     LOGGER.log(Level.INFO, "This pull request can not be merge");
                     GiteeMessagePublisher publisher = GiteeMessagePublisher.getFromJob(job);
-                    GiteeClient client = getClient(job);
+                    AsyncGiteeClient client = getAsyncClient(job);
 
                     if (publisher != null && client != null) {
-                        PullRequest pullRequest = new PullRequest(objectAttributes);
+                        final PullRequest pullRequest = new PullRequest(objectAttributes);
+                        final String jobName = job.getFullName();
                         LOGGER.log(Level.INFO, "sending message to gitee.....");
-                        client.createPullRequestNote(pullRequest, ":bangbang: This pull request can not be merge! The build will not be triggered. Please manual merge conflict.");
+                        ListenableFuture<Void> note = client.createPullRequestNote(pullRequest, ":bangbang: This pull request can not be merge! The build will not be triggered. Please manual merge conflict.");
+                        Futures.addCallback(note, new FutureCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                                LOGGER.log(Level.FINE, "Commented on the conflicting pull request {0} of {1}", toArray(pullRequest.getIid(), jobName));
+                            }
+
+                            @Override
+                            public void onFailure(Throwable t) {
+                                LOGGER.log(Level.WARNING, "Failed to comment on the conflicting pull request " + pullRequest.getIid() + " of " + jobName, t);
+                            }
+                        });
                     }
                     return;
                 }
@@ -136,6 +152,11 @@ class PullRequestHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<Pu
         return false;
     }
 
+    @Override
+    protected int getCoalescingWindow(PullRequestHook hook) {
+        return hook.getAction() == Action.update ? coalescingWindow : 0;
+    }
+
     @Override
     protected void cancelPendingBuildsIfNecessary(Job<?, ?> job, PullRequestHook hook) {
         if (!this.cancelPendingBuildsOnUpdate) {
@@ -153,40 +174,9 @@ class PullRequestHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<Pu
             return;
         }
 
-        for (Run<?, ?> build : job.getBuilds()) {
-            if (!job.isBuilding()) {
-                break;
-            }
-
-            if (!build.isBuilding()) {
-                continue;
-            }
-
-            CauseAction causeAction = build.getAction(CauseAction.class);
-            GiteeWebHookCause giteeWebHookCause = null;
-            for (Cause cause : causeAction.getCauses()) {
-                if (cause instanceof GiteeWebHookCause) {
-                    giteeWebHookCause = (GiteeWebHookCause) cause;
-                    break;
-                }
-            }
-
-            if (giteeWebHookCause == null) {
-                continue;
-            }
-            CauseData causeData = giteeWebHookCause.getData();
-            if (causeData.getSourceRepoHttpUrl().equals(hook.getPullRequest().getSource().getGitHttpUrl())
-                && causeData.getTargetRepoHttpUrl().equals(hook.getPullRequest().getTarget().getGitHttpUrl())
-                && causeData.getRef().equals(hook.getPullRequest().getMergeReferenceName())) {
-                try {
-                    doStop(build);
-                } catch (ServletException | IOException e) {
-                    LOGGER.log(Level.WARNING, "Unable to abort incomplete build", e);
-                }
-            }
-
-        }
-
+        cancelIncompleteBuilds(job, hook.getPullRequest().getSource().getGitHttpUrl(),
+                               hook.getPullRequest().getTarget().getGitHttpUrl(),
+                               hook.getPullRequest().getMergeReferenceName());
     }
 
     @Override
@@ -236,6 +226,7 @@ class PullRequestHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<Pu
                 .withTargetProjectUrl(hook.getPullRequest().getTarget().getUrl())
                 .withPathWithNamespace(hook.getRepo().getPathWithNamespace())
                 .withJsonBody(hook.getJsonBody())
+                .withJsonBodyHash(hook.getJsonBodyHash())
                 .build();
     }
 
@@ -1,5 +1,8 @@
 package com.gitee.jenkins.trigger.handler.push;
 
+import com.gitee.jenkins.trigger.filter.ChangedPathFilter;
+import com.gitee.jenkins.trigger.filter.ChangedPathFilterFactory;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,17 +14,21 @@ public final class PushHookTriggerHandlerFactory {
     private PushHookTriggerHandlerFactory() {}
 
     public static PushHookTriggerHandler newPushHookTriggerHandler(boolean triggerOnPush, boolean skipWorkInProgressPullRequest) {
+        return newPushHookTriggerHandler(triggerOnPush, skipWorkInProgressPullRequest, 0, ChangedPathFilterFactory.newChangedPathFilter(null, null));
+    }
+
+    public static PushHookTriggerHandler newPushHookTriggerHandler(boolean triggerOnPush, boolean skipWorkInProgressPullRequest, int coalescingWindow, ChangedPathFilter changedPathFilter) {
         if (triggerOnPush) {
-            return new PushHookTriggerHandlerList(retrieveHandlers(triggerOnPush, skipWorkInProgressPullRequest));
+            return new PushHookTriggerHandlerList(retrieveHandlers(triggerOnPush, skipWorkInProgressPullRequest, coalescingWindow, changedPathFilter));
         } else {
             return new NopPushHookTriggerHandler();
         }
     }
 
-    private static List<PushHookTriggerHandler> retrieveHandlers(boolean triggerOnPush, boolean skipWorkInProgressPullRequest) {
+    private static List<PushHookTriggerHandler> retrieveHandlers(boolean triggerOnPush, boolean skipWorkInProgressPullRequest, int coalescingWindow, ChangedPathFilter changedPathFilter) {
         List<PushHookTriggerHandler> result = new ArrayList<>();
         if (triggerOnPush) {
-            result.add(new PushHookTriggerHandlerImpl());
+            result.add(new PushHookTriggerHandlerImpl(coalescingWindow, changedPathFilter));
         }
 
         return result;
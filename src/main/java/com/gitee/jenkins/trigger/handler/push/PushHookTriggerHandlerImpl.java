@@ -2,13 +2,17 @@ package com.gitee.jenkins.trigger.handler.push;
 
 import com.gitee.jenkins.cause.CauseData;
 import com.gitee.jenkins.cause.GiteeWebHookCause;
+import com.gitee.jenkins.environment.ChangedPathsAction;
 import com.gitee.jenkins.gitee.hook.model.Commit;
 import com.gitee.jenkins.gitee.hook.model.PushHook;
 import com.gitee.jenkins.trigger.exception.NoRevisionToBuildException;
 import com.gitee.jenkins.trigger.filter.BranchFilter;
 import com.gitee.jenkins.trigger.filter.BuildInstructionFilter;
+import com.gitee.jenkins.trigger.filter.BuildInstructionFilterType;
+import com.gitee.jenkins.trigger.filter.ChangedPathFilter;
 import com.gitee.jenkins.trigger.filter.PullRequestLabelFilter;
 import com.gitee.jenkins.trigger.handler.AbstractWebHookTriggerHandler;
+import hudson.model.Action;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.plugins.git.GitSCM;
@@ -16,7 +20,10 @@ import hudson.plugins.git.RevisionParameterAction;
 import com.gitee.jenkins.util.BuildUtil;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.lang.StringUtils;
 import static com.gitee.jenkins.cause.CauseDataBuilder.causeData;
 import static com.gitee.jenkins.trigger.handler.builder.generated.BuildStatusUpdateBuilder.buildStatusUpdate;
@@ -31,6 +38,14 @@ class PushHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<PushHook>
 
     private static final String NO_COMMIT = "0000000000000000000000000000000000000000";
 
+    private final int coalescingWindow;
+    private final ChangedPathFilter changedPathFilter;
+
+    PushHookTriggerHandlerImpl(int coalescingWindow, ChangedPathFilter changedPathFilter) {
+        this.coalescingWindow = coalescingWindow;
+        this.changedPathFilter = changedPathFilter;
+    }
+
     @Override
     public void handle(Job<?, ?> job, PushHook hook, BuildInstructionFilter buildInstructionFilter, boolean skipLastCommitHasBeenBuild, BranchFilter branchFilter, PullRequestLabelFilter pullRequestLabelFilter) {
         if (isNoRemoveBranchPush(hook)) {
@@ -41,7 +56,7 @@ class PushHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<PushHook>
     @Override
     protected boolean isCiSkip(PushHook hook, BuildInstructionFilter buildInstructionFilter) {
         List<Commit> commits = hook.getCommits();
-        if (buildInstructionFilter!= null && commits != null && !commits.isEmpty()) {
+        if (buildInstructionFilter != null && buildInstructionFilter != BuildInstructionFilterType.NONE && commits != null && !commits.isEmpty()) {
             return !buildInstructionFilter.isBuildAllow(commits.get(commits.size() - 1).getMessage());
         }
         return false;
@@ -60,6 +75,23 @@ class PushHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<PushHook>
         return false;
     }
 
+    @Override
+    protected Action[] createActions(Job<?, ?> job, PushHook hook) {
+        Action[] actions = super.createActions(job, hook);
+        Set<String> changedPaths = hook.changedPaths();
+        if (changedPaths == null) {
+            return actions;
+        }
+        List<Action> result = new ArrayList<>(Arrays.asList(actions));
+        result.add(new ChangedPathsAction(changedPaths));
+        return result.toArray(new Action[result.size()]);
+    }
+
+    @Override
+    protected int getCoalescingWindow(PushHook hook) {
+        return coalescingWindow;
+    }
+
     @Override
     protected CauseData retrieveCauseData(PushHook hook) {
 //        fixme 判断是否push tag，Gitee 钩子未有相关数据
@@ -102,6 +134,7 @@ class PushHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<PushHook>
                 .withDeleted(hook.getDeleted())
                 .withTargetProjectUrl(hook.getProject().getUrl())
                 .withJsonBody(hook.getJsonBody())
+                .withJsonBodyHash(hook.getJsonBodyHash())
                 .build();
     }
 
@@ -161,6 +194,13 @@ class PushHookTriggerHandlerImpl extends AbstractWebHookTriggerHandler<PushHook>
         return hook.getAfter() != null && !hook.getAfter().equals(NO_COMMIT);
     }
 
+    @Override
+    protected boolean isChangeAllowed(PushHook hook) {
+        // pushes that do not list all their changes are always built
+        Set<String> changedPaths = hook.changedPaths();
+        return changedPaths == null || changedPaths.isEmpty() || changedPathFilter.isChangeAllowed(changedPaths);
+    }
+
     private boolean isNoRemoveBranchPush(PushHook hook) {
         return hook.getAfter() != null && !hook.getAfter().equals(NO_COMMIT);
     }
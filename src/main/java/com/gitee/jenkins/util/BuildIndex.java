@@ -0,0 +1,267 @@
+package com.gitee.jenkins.util;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.util.BuildData;
+import hudson.plugins.git.util.MergeRecord;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.BuildUtil.hasLastBuild;
+import static com.gitee.jenkins.util.BuildUtil.isNoMergeBuild;
+
+/**
+ * Per job index of the built revisions and branches, persisted in the job directory.
+ * Lets {@link BuildUtil} find a build by its number instead of loading the whole build history.
+ * The index is built on first use and kept up to date by {@link com.gitee.jenkins.listener.BuildIndexRunListener}.
+ * An index does not keep a reference to its job, the weak map of the indices would otherwise never release the job,
+ * so the job is passed to the methods needing it.
+ */
+public final class BuildIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(BuildIndex.class.getName());
+    private static final String FILE_NAME = "gitee-build-index.xml";
+    private static final int SHA1_LENGTH = 40;
+    private static final int SAVE_DELAY_SECONDS = 5;
+    private static final Map<Job<?, ?>, BuildIndex> INDICES = new WeakHashMap<>();
+
+    private Map<String, TreeSet<Integer>> markedSha1s = new HashMap<>();
+    private Map<String, TreeSet<Integer>> revisionSha1s = new HashMap<>();
+    private Map<String, Integer> branches = new HashMap<>();
+    private int indexedUpTo;
+
+    private transient boolean upToDate;
+    private transient boolean savePending;
+
+    private BuildIndex() { }
+
+    public static BuildIndex get(Job<?, ?> job) {
+        BuildIndex index;
+        synchronized (INDICES) {
+            index = INDICES.get(job);
+            if (index == null) {
+                index = load(job);
+                INDICES.put(job, index);
+            }
+        }
+        index.ensureUpToDate(job);
+        return index;
+    }
+
+    /**
+     * @return the index of the job or {@code null} if it has never been used, in which case it does not need to be maintained
+     */
+    public static BuildIndex getIfPresent(Job<?, ?> job) {
+        synchronized (INDICES) {
+            if (!INDICES.containsKey(job) && !getXmlFile(job).exists()) {
+                return null;
+            }
+        }
+        return get(job);
+    }
+
+    public synchronized Run<?, ?> getBuildBySHA1IncludingMergeBuilds(Job<?, ?> job, String sha1) {
+        if (sha1 == null) {
+            return null;
+        }
+        return getNewestBuild(job, markedSha1s.get(sha1));
+    }
+
+    public synchronized Run<?, ?> getBuildBySHA1WithoutMergeBuilds(Job<?, ?> job, String sha1) {
+        if (sha1 == null) {
+            return null;
+        }
+        if (sha1.length() < SHA1_LENGTH) {
+            // abbreviated revisions are matched by prefix which the index can't do
+            return BuildUtil.findBuildBySHA1WithoutMergeBuilds(job, sha1);
+        }
+        return getNewestBuild(job, revisionSha1s.get(sha1));
+    }
+
+    public synchronized Run<?, ?> getBuildByBranch(Job<?, ?> job, String branchName) {
+        Integer number = branches.get(branchName);
+        if (number == null) {
+            return null;
+        }
+        Run<?, ?> build = job.getBuildByNumber(number);
+        if (build == null) {
+            // the build has been deleted, an older one might have been built for the branch too
+            build = BuildUtil.findBuildByBranch(job, branchName);
+            if (build == null) {
+                branches.remove(branchName);
+            } else {
+                branches.put(branchName, build.getNumber());
+            }
+            scheduleSave(job);
+        }
+        return build;
+    }
+
+    public synchronized void add(Run<?, ?> build) {
+        addWithoutSaving(build);
+        if (upToDate) {
+            indexedUpTo = Math.max(indexedUpTo, build.getNumber());
+        }
+        scheduleSave(build.getParent());
+    }
+
+    public synchronized void remove(Run<?, ?> build) {
+        Integer number = build.getNumber();
+        removeNumber(markedSha1s, number);
+        removeNumber(revisionSha1s, number);
+        scheduleSave(build.getParent());
+    }
+
+    private void addWithoutSaving(Run<?, ?> build) {
+        Integer number = build.getNumber();
+        MergeRecord merge = build.getAction(MergeRecord.class);
+        for (BuildData data : build.getActions(BuildData.class)) {
+            if (data == null || data.lastBuild == null) {
+                continue;
+            }
+            if (data.lastBuild.getMarked() != null) {
+                addNumber(markedSha1s, data.lastBuild.getMarked().getSha1String(), number);
+            }
+            if (hasLastBuild(data) && isNoMergeBuild(data, merge)) {
+                addNumber(revisionSha1s, data.lastBuild.getRevision().getSha1String(), number);
+                for (Branch branch : data.lastBuild.getRevision().getBranches()) {
+                    addBranch(branch.getName(), number);
+                }
+            }
+        }
+    }
+
+    private void addBranch(String name, Integer number) {
+        // BuildUtil matches the branch name as suffix of the remote branch (e.g. origin/feature/x)
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) {
+            String suffix = name.substring(i + 1);
+            Integer current = branches.get(suffix);
+            if (current == null || current < number) {
+                branches.put(suffix, number);
+            }
+        }
+    }
+
+    private Run<?, ?> getNewestBuild(Job<?, ?> job, TreeSet<Integer> numbers) {
+        if (numbers == null) {
+            return null;
+        }
+        for (Integer number : numbers.descendingSet()) {
+            Run<?, ?> build = job.getBuildByNumber(number);
+            if (build != null) {
+                return build;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void ensureUpToDate(Job<?, ?> job) {
+        if (upToDate) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int count = 0;
+        int newest = indexedUpTo;
+        for (Run<?, ?> build : job.getBuilds()) {
+            if (build.getNumber() <= indexedUpTo) {
+                break;
+            }
+            addWithoutSaving(build);
+            newest = Math.max(newest, build.getNumber());
+            count++;
+        }
+        indexedUpTo = newest;
+        upToDate = true;
+        if (count > 0) {
+            LOGGER.log(Level.FINE, "Indexed {0} builds of {1} in {2} ms",
+                       LoggerUtil.toArray(count, job.getFullName(), System.currentTimeMillis() - start));
+            scheduleSave(job);
+        }
+    }
+
+    private void scheduleSave(final Job<?, ?> job) {
+        if (savePending) {
+            return;
+        }
+        savePending = true;
+        Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                save(job);
+            }
+        }, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private synchronized void save(Job<?, ?> job) {
+        savePending = false;
+        try {
+            getXmlFile(job).write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save build index of " + job.getFullName(), e);
+        }
+    }
+
+    private static BuildIndex load(Job<?, ?> job) {
+        XmlFile file = getXmlFile(job);
+        BuildIndex index = null;
+        if (file.exists()) {
+            try {
+                index = (BuildIndex) file.read();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to load build index of " + job.getFullName() + ", rebuilding it", e);
+            }
+        }
+        if (index == null) {
+            index = new BuildIndex();
+        }
+        return index;
+    }
+
+    private static XmlFile getXmlFile(Job<?, ?> job) {
+        return new XmlFile(Jenkins.XSTREAM2, new File(job.getRootDir(), FILE_NAME));
+    }
+
+    private static void addNumber(Map<String, TreeSet<Integer>> index, String key, Integer number) {
+        TreeSet<Integer> numbers = index.get(key);
+        if (numbers == null) {
+            numbers = new TreeSet<>();
+            index.put(key, numbers);
+        }
+        numbers.add(number);
+    }
+
+    private static void removeNumber(Map<String, TreeSet<Integer>> index, Integer number) {
+        for (Iterator<TreeSet<Integer>> it = index.values().iterator(); it.hasNext(); ) {
+            TreeSet<Integer> numbers = it.next();
+            if (numbers.remove(number) && numbers.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private Object readResolve() {
+        if (markedSha1s == null) {
+            markedSha1s = new HashMap<>();
+        }
+        if (revisionSha1s == null) {
+            revisionSha1s = new HashMap<>();
+        }
+        if (branches == null) {
+            branches = new HashMap<>();
+        }
+        return this;
+    }
+}
@@ -11,6 +11,18 @@ import hudson.plugins.git.util.MergeRecord;
  */
 public class BuildUtil {
     public static Run<?, ?> getBuildByBranch(Job<?, ?> project, String branchName) {
+        return BuildIndex.get(project).getBuildByBranch(project, branchName);
+    }
+
+    public static Run<?, ?> getBuildBySHA1WithoutMergeBuilds(Job<?, ?> project, String sha1) {
+        return BuildIndex.get(project).getBuildBySHA1WithoutMergeBuilds(project, sha1);
+    }
+
+    public static Run<?, ?> getBuildBySHA1IncludingMergeBuilds(Job<?, ?> project, String sha1) {
+        return BuildIndex.get(project).getBuildBySHA1IncludingMergeBuilds(project, sha1);
+    }
+
+    static Run<?, ?> findBuildByBranch(Job<?, ?> project, String branchName) {
         for (Run<?, ?> build : project.getBuilds()) {
             BuildData data = build.getAction(BuildData.class);
             MergeRecord merge = build.getAction(MergeRecord.class);
@@ -25,7 +37,7 @@ public class BuildUtil {
         return null;
     }
 
-    public static Run<?, ?> getBuildBySHA1WithoutMergeBuilds(Job<?, ?> project, String sha1) {
+    static Run<?, ?> findBuildBySHA1WithoutMergeBuilds(Job<?, ?> project, String sha1) {
         for (Run<?, ?> build : project.getBuilds()) {
             MergeRecord merge = build.getAction(MergeRecord.class);
             for(BuildData data : build.getActions(BuildData.class)) {
@@ -37,25 +49,11 @@ public class BuildUtil {
         return null;
     }
 
-    public static Run<?, ?> getBuildBySHA1IncludingMergeBuilds(Job<?, ?> project, String sha1) {
-        for (Run<?, ?> build : project.getBuilds()) {
-            for(BuildData data : build.getActions(BuildData.class)) {
-                if (data != null
-                    && data.lastBuild != null
-                    && data.lastBuild.getMarked() != null
-                    && data.lastBuild.getMarked().getSha1String().equals(sha1)) {
-                    return build;
-                }
-            }
-        }
-        return null;
-    }
-
-    private static boolean isNoMergeBuild(BuildData data, MergeRecord merge) {
+    static boolean isNoMergeBuild(BuildData data, MergeRecord merge) {
         return merge == null || merge.getSha1().equals(data.lastBuild.getMarked().getSha1String());
     }
 
-    private static boolean hasLastBuild(BuildData data) {
+    static boolean hasLastBuild(BuildData data) {
         return data != null && data.lastBuild != null && data.lastBuild.getRevision() != null;
     }
 }
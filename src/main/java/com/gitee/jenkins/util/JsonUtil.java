@@ -1,18 +1,37 @@
 package com.gitee.jenkins.util;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.gitee.jenkins.gitee.api.model.Branch;
+import com.gitee.jenkins.gitee.api.model.Commit;
+import com.gitee.jenkins.gitee.api.model.Label;
+import com.gitee.jenkins.gitee.api.model.Note;
+import com.gitee.jenkins.gitee.api.model.Pipeline;
+import com.gitee.jenkins.gitee.api.model.Project;
+import com.gitee.jenkins.gitee.api.model.PullRequest;
+import com.gitee.jenkins.gitee.api.model.User;
+import com.gitee.jenkins.gitee.hook.model.NoteHook;
+import com.gitee.jenkins.gitee.hook.model.PipelineHook;
+import com.gitee.jenkins.gitee.hook.model.PullRequestHook;
+import com.gitee.jenkins.gitee.hook.model.PushHook;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Robin Müller
@@ -23,14 +42,86 @@ public final class JsonUtil {
             .setPropertyNamingStrategy(PropertyNamingStrategy.CAMEL_CASE_TO_LOWER_CASE_WITH_UNDERSCORES)
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
             .configure(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL, true)
-            .configure(SerializationFeature.INDENT_OUTPUT, true)
+            // the payload must not show up in the error messages of the Gitee clients
+            .configure(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION, false)
             .registerModule(new DateModule());
+    private static final ObjectWriter PRETTY_WRITER = OBJECT_MAPPER.writerWithDefaultPrettyPrinter();
+    private static final List<Class<?>> MODEL_TYPES = Arrays.<Class<?>>asList(
+            PushHook.class, PullRequestHook.class, NoteHook.class, PipelineHook.class,
+            User.class, PullRequest.class, Project.class, Branch.class, Label.class, Note.class, Pipeline.class, Commit.class);
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectReader> LAZY_READERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
 
     private JsonUtil() { }
 
+    /**
+     * Builds the readers and writers of the hook and API models, so that the first web hook does not pay for the
+     * introspection of its model.
+     */
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void warmUp() {
+        for (Class<?> type : MODEL_TYPES) {
+            readerFor(type);
+            lazyReaderFor(type);
+            writerFor(type);
+        }
+    }
+
+    /**
+     * @return the mapper shared by the web hooks and the Gitee clients, it must not be reconfigured
+     */
+    public static ObjectMapper getObjectMapper() {
+        return OBJECT_MAPPER;
+    }
+
+    public static ObjectReader readerFor(Class<?> type) {
+        ObjectReader reader = READERS.get(type);
+        if (reader == null) {
+            reader = OBJECT_MAPPER.readerFor(type);
+            READERS.putIfAbsent(type, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * @return a reader binding the lists marked with {@link LazyListDeserializer} on their first access, its parsers
+     * keep the payload for that
+     */
+    public static ObjectReader lazyReaderFor(Class<?> type) {
+        ObjectReader reader = LAZY_READERS.get(type);
+        if (reader == null) {
+            reader = readerFor(type)
+                .with(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION)
+                .withAttribute(LazyListDeserializer.LAZY, Boolean.TRUE);
+            LAZY_READERS.putIfAbsent(type, reader);
+        }
+        return reader;
+    }
+
+    public static ObjectWriter writerFor(Class<?> type) {
+        ObjectWriter writer = WRITERS.get(type);
+        if (writer == null) {
+            writer = OBJECT_MAPPER.writerFor(type);
+            WRITERS.putIfAbsent(type, writer);
+        }
+        return writer;
+    }
+
     public static String toPrettyPrint(String json) {
         try {
-            return OBJECT_MAPPER.writeValueAsString(OBJECT_MAPPER.readValue(json, Object.class));
+            return PRETTY_WRITER.writeValueAsString(OBJECT_MAPPER.readValue(json, Object.class));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the value as compact JSON on a single line
+     */
+    public static String toJson(Object value) {
+        try {
+            return writerFor(value.getClass()).writeValueAsString(value);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -38,7 +129,38 @@ public final class JsonUtil {
 
     public static <T> T read(String json, Class<T> type) {
         try {
-            return OBJECT_MAPPER.readValue(json, type);
+            return readerFor(type).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static <T> T read(byte[] json, int offset, int length, Class<T> type) {
+        try {
+            return readerFor(type).readValue(json, offset, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the value, its lazy lists keep a reference to the JSON, so the array must not be modified afterwards.
+     */
+    public static <T> T readLazily(byte[] json, int offset, int length, Class<T> type) {
+        try {
+            ObjectReader reader = lazyReaderFor(type);
+            if (offset != 0) {
+                reader = reader.withAttribute(LazyListDeserializer.SOURCE_OFFSET, offset);
+            }
+            return reader.readValue(json, offset, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static <T> T readLazily(String json, Class<T> type) {
+        try {
+            return lazyReaderFor(type).readValue(json);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -53,6 +175,11 @@ public final class JsonUtil {
             addDeserializer(Date.class, new com.fasterxml.jackson.databind.JsonDeserializer<Date>() {
                 @Override
                 public Date deserialize(com.fasterxml.jackson.core.JsonParser p, DeserializationContext ctxt) throws IOException {
+                    Date date = TimestampParser.parse(p.getValueAsString());
+                    if (date != null) {
+                        return date;
+                    }
+                    // lenient fallback for layouts the timestamp parser does not know
                     for (String format : DATE_FORMATS) {
                         try {
                             return new SimpleDateFormat(format, Locale.US)
@@ -0,0 +1,63 @@
+package com.gitee.jenkins.util;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List kept as the range of the payload it was read from, its elements are bound on first access.
+ *
+ * @see LazyListDeserializer
+ */
+public final class LazyList<E> extends AbstractList<E> implements RandomAccess {
+
+    private final ObjectReader reader;
+    private final int start;
+    private final int end;
+    // the byte[] or String the list was read from, released once the list is bound
+    private Object source;
+    private List<E> list;
+
+    LazyList(ObjectReader reader, Object source, int start, int end) {
+        this.reader = reader;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public E get(int index) {
+        return list().get(index);
+    }
+
+    @Override
+    public int size() {
+        return list().size();
+    }
+
+    /**
+     * @return whether the elements have been bound
+     */
+    public synchronized boolean isBound() {
+        return list != null;
+    }
+
+    private synchronized List<E> list() {
+        if (list == null) {
+            try {
+                if (source instanceof byte[]) {
+                    list = reader.readValue((byte[]) source, start, end - start);
+                } else {
+                    list = reader.readValue(((String) source).substring(start, end));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to bind " + reader.getValueType(), e);
+            }
+            source = null;
+        }
+        return list;
+    }
+}
@@ -0,0 +1,70 @@
+package com.gitee.jenkins.util;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Skips a JSON array without binding it and returns a {@link LazyList} over its range of the payload, so that hooks
+ * rejected before the array is looked at do not pay for its elements.
+ * <p>
+ * Arrays are only bound lazily by the readers of {@link JsonUtil#lazyReaderFor(Class)}, and right away when the
+ * parser does not expose the payload, e.g. when reading from a stream.
+ */
+public class LazyListDeserializer extends JsonDeserializer<List<?>> implements ContextualDeserializer {
+
+    /**
+     * Attribute enabling the lazy binding, the source of the parser must not change while the lists are not bound.
+     */
+    public static final String LAZY = LazyListDeserializer.class.getName() + ".lazy";
+    /**
+     * Attribute holding the offset of the payload in its byte array, the parser reports positions relative to it.
+     */
+    public static final String SOURCE_OFFSET = LazyListDeserializer.class.getName() + ".sourceOffset";
+
+    private final JavaType type;
+    private final ObjectReader reader;
+
+    public LazyListDeserializer() {
+        this(null, null);
+    }
+
+    private LazyListDeserializer(JavaType type, ObjectReader reader) {
+        this.type = type;
+        this.reader = reader;
+    }
+
+    @Override
+    public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property) {
+        JavaType type = property == null ? ctxt.getContextualType() : property.getType();
+        return new LazyListDeserializer(type, JsonUtil.getObjectMapper().readerFor(type));
+    }
+
+    @Override
+    public List<?> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.getCurrentToken() == JsonToken.START_ARRAY && Boolean.TRUE.equals(ctxt.getAttribute(LAZY))) {
+            JsonLocation location = p.getTokenLocation();
+            Object source = location.getSourceRef();
+            if (source instanceof byte[] && location.getByteOffset() >= 0) {
+                Object offset = ctxt.getAttribute(SOURCE_OFFSET);
+                int base = offset instanceof Integer ? (Integer) offset : 0;
+                p.skipChildren();
+                return new LazyList<>(reader, source, base + (int) location.getByteOffset(), base + (int) p.getCurrentLocation().getByteOffset());
+            }
+            if (source instanceof String && location.getCharOffset() >= 0) {
+                p.skipChildren();
+                return new LazyList<>(reader, source, (int) location.getCharOffset(), (int) p.getCurrentLocation().getCharOffset());
+            }
+        }
+        return ctxt.readValue(p, type);
+    }
+}
@@ -0,0 +1,240 @@
+package com.gitee.jenkins.util;
+
+import com.gitee.jenkins.cause.CauseData;
+import com.gitee.jenkins.cause.GiteeWebHookCause;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index of the running builds started by a Gitee web hook, keyed by job, source repository,
+ * target repository and ref, so that incomplete builds of a pull request can be found without loading
+ * the build history of the job.
+ */
+public final class RunningBuildIndex {
+
+    private static final RunningBuildIndex INSTANCE = new RunningBuildIndex();
+    private static final long RESEED_DELAY_SECONDS = 60;
+
+    private final Map<Key, Set<Run<?, ?>>> builds = new ConcurrentHashMap<>();
+
+    private RunningBuildIndex() { }
+
+    public static RunningBuildIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the running builds of the job that were triggered for the given repositories and ref
+     */
+    public List<Run<?, ?>> getBuilds(Job<?, ?> job, String sourceRepoUrl, String targetRepoUrl, String ref) {
+        Set<Run<?, ?>> result = builds.get(new Key(job.getFullName(), sourceRepoUrl, targetRepoUrl, ref));
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(result);
+    }
+
+    public int getBuildCount() {
+        int count = 0;
+        for (Set<Run<?, ?>> runs : builds.values()) {
+            count += runs.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return a snapshot of the index for diagnostics
+     */
+    public List<Entry> getEntries() {
+        List<Entry> result = new ArrayList<>();
+        for (Map.Entry<Key, Set<Run<?, ?>>> entry : builds.entrySet()) {
+            for (Run<?, ?> build : entry.getValue()) {
+                result.add(new Entry(entry.getKey(), build));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the builds still running when Jenkins was started, e.g. resumed pipelines, they do not fire
+     * {@link RunListener#onStarted(Run, TaskListener)}. Only the builds on the executors are looked at, the build
+     * records of the jobs are not loaded. Resumed builds may get their executor a little later, so the executors are
+     * looked at once more after {@link #RESEED_DELAY_SECONDS}.
+     */
+    @Initializer(after = InitMilestone.COMPLETED)
+    public static void seed() {
+        INSTANCE.addExecutingBuilds();
+        Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                INSTANCE.addExecutingBuilds();
+            }
+        }, RESEED_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void addExecutingBuilds() {
+        for (Computer computer : Jenkins.getInstance().getComputers()) {
+            List<Executor> executors = new ArrayList<>(computer.getExecutors());
+            executors.addAll(computer.getOneOffExecutors());
+            for (Executor executor : executors) {
+                Queue.Executable executable = executor.getCurrentExecutable();
+                if (executable instanceof Run && ((Run<?, ?>) executable).isBuilding()) {
+                    Run<?, ?> build = (Run<?, ?>) executable;
+                    add(build);
+                    if (!build.isBuilding()) {
+                        // finalized meanwhile
+                        remove(build);
+                    }
+                }
+            }
+        }
+    }
+
+    void add(Run<?, ?> build) {
+        Key key = keyOf(build);
+        if (key == null) {
+            return;
+        }
+        synchronized (builds) {
+            Set<Run<?, ?>> runs = builds.get(key);
+            if (runs == null) {
+                runs = Collections.newSetFromMap(new ConcurrentHashMap<Run<?, ?>, Boolean>());
+                builds.put(key, runs);
+            }
+            runs.add(build);
+        }
+    }
+
+    void remove(Run<?, ?> build) {
+        Key key = keyOf(build);
+        if (key == null) {
+            return;
+        }
+        synchronized (builds) {
+            Set<Run<?, ?>> runs = builds.get(key);
+            if (runs != null) {
+                runs.remove(build);
+                if (runs.isEmpty()) {
+                    builds.remove(key);
+                }
+            }
+        }
+    }
+
+    private static Key keyOf(Run<?, ?> build) {
+        GiteeWebHookCause cause = build.getCause(GiteeWebHookCause.class);
+        if (cause == null) {
+            return null;
+        }
+        CauseData data = cause.getData();
+        return new Key(build.getParent().getFullName(), data.getSourceRepoHttpUrl(), data.getTargetRepoHttpUrl(), data.getRef());
+    }
+
+    public static final class Entry {
+        private final Key key;
+        private final Run<?, ?> build;
+
+        private Entry(Key key, Run<?, ?> build) {
+            this.key = key;
+            this.build = build;
+        }
+
+        public String getJobName() {
+            return key.jobName;
+        }
+
+        public String getSourceRepoUrl() {
+            return key.sourceRepoUrl;
+        }
+
+        public String getTargetRepoUrl() {
+            return key.targetRepoUrl;
+        }
+
+        public String getRef() {
+            return key.ref;
+        }
+
+        public Run<?, ?> getBuild() {
+            return build;
+        }
+    }
+
+    private static final class Key {
+        private final String jobName;
+        private final String sourceRepoUrl;
+        private final String targetRepoUrl;
+        private final String ref;
+
+        private Key(String jobName, String sourceRepoUrl, String targetRepoUrl, String ref) {
+            this.jobName = jobName;
+            this.sourceRepoUrl = sourceRepoUrl;
+            this.targetRepoUrl = targetRepoUrl;
+            this.ref = ref;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return jobName.equals(that.jobName)
+                && equal(sourceRepoUrl, that.sourceRepoUrl)
+                && equal(targetRepoUrl, that.targetRepoUrl)
+                && equal(ref, that.ref);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = jobName.hashCode();
+            result = 31 * result + (sourceRepoUrl != null ? sourceRepoUrl.hashCode() : 0);
+            result = 31 * result + (targetRepoUrl != null ? targetRepoUrl.hashCode() : 0);
+            result = 31 * result + (ref != null ? ref.hashCode() : 0);
+            return result;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    @Extension
+    public static class Listener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onStarted(Run<?, ?> build, TaskListener listener) {
+            INSTANCE.add(build);
+        }
+
+        @Override
+        public void onFinalized(Run<?, ?> build) {
+            INSTANCE.remove(build);
+        }
+
+        @Override
+        public void onDeleted(Run<?, ?> build) {
+            INSTANCE.remove(build);
+        }
+    }
+}
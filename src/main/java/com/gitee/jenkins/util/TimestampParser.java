@@ -0,0 +1,148 @@
+package com.gitee.jenkins.util;
+
+import java.util.Date;
+
+/**
+ * Parses the timestamps of Gitee payloads without formatters and exceptions.
+ * <p>
+ * The layout is detected from the characters: {@code yyyy-MM-dd HH:mm:ss}, with a space or a {@code T} between date and
+ * time, optionally followed by a fraction of seconds, and a zone that is either {@code Z} or an offset like
+ * {@code +08}, {@code +0800} or {@code +08:00}, optionally separated by a space. A {@code Z} is UTC.
+ */
+public final class TimestampParser {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    private TimestampParser() { }
+
+    /**
+     * @return the timestamp, {@code null} if it does not have one of the supported layouts
+     */
+    public static Date parse(String value) {
+        if (value == null || value.length() < 20) {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        char separator = value.charAt(10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+            || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+            || value.charAt(4) != '-' || value.charAt(7) != '-' || (separator != 'T' && separator != ' ')
+            || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return null;
+        }
+
+        int index = 19;
+        int millis = 0;
+        if (value.charAt(index) == '.') {
+            int start = ++index;
+            while (index < value.length() && isDigit(value.charAt(index))) {
+                if (index - start < 3) {
+                    millis = millis * 10 + value.charAt(index) - '0';
+                }
+                index++;
+            }
+            if (index == start) {
+                return null;
+            }
+            for (int digits = index - start; digits < 3; digits++) {
+                millis *= 10;
+            }
+        }
+        if (index < value.length() && value.charAt(index) == ' ') {
+            index++;
+        }
+
+        int offsetMinutes = offsetMinutes(value, index);
+        if (offsetMinutes == Integer.MIN_VALUE) {
+            return null;
+        }
+        long epochMillis = daysSinceEpoch(year, month, day) * MILLIS_PER_DAY
+            + ((hour * 60L + minute) * 60L + second) * 1000L + millis
+            - offsetMinutes * MILLIS_PER_MINUTE;
+        return new Date(epochMillis);
+    }
+
+    /**
+     * @return the offset of the zone starting at the index in minutes, {@link Integer#MIN_VALUE} if it is invalid
+     */
+    private static int offsetMinutes(String value, int index) {
+        int length = value.length() - index;
+        if (length == 1 && value.charAt(index) == 'Z') {
+            return 0;
+        }
+        if (length < 3) {
+            return Integer.MIN_VALUE;
+        }
+        char sign = value.charAt(index);
+        if (sign != '+' && sign != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int hours = digits(value, index + 1, 2);
+        int minutes;
+        if (length == 3) {
+            minutes = 0;
+        } else if (length == 5) {
+            minutes = digits(value, index + 3, 2);
+        } else if (length == 6 && value.charAt(index + 3) == ':') {
+            minutes = digits(value, index + 4, 2);
+        } else {
+            return Integer.MIN_VALUE;
+        }
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        int offset = hours * 60 + minutes;
+        return sign == '-' ? -offset : offset;
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the date of the proleptic Gregorian calendar
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return the value of the digits, -1 if one of the characters is not a digit
+     */
+    private static int digits(String value, int index, int count) {
+        int result = 0;
+        for (int i = index; i < index + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + c - '0';
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,10 +1,18 @@
 package com.gitee.jenkins.webhook;
 
+import com.gitee.jenkins.connection.GiteeConnectionConfig;
+import com.gitee.jenkins.gitee.hook.model.NoteHook;
+import com.gitee.jenkins.gitee.hook.model.PipelineHook;
+import com.gitee.jenkins.gitee.hook.model.PullRequestHook;
+import com.gitee.jenkins.gitee.hook.model.PushHook;
+import com.gitee.jenkins.gitee.hook.model.WebHook;
 import com.gitee.jenkins.util.ACLUtil;
 import com.gitee.jenkins.webhook.build.PullRequestBuildAction;
 import com.gitee.jenkins.webhook.build.NoteBuildAction;
 import com.gitee.jenkins.webhook.build.PipelineBuildAction;
 import com.gitee.jenkins.webhook.build.PushBuildAction;
+import com.gitee.jenkins.webhook.build.QueuedBuildAction;
+import com.gitee.jenkins.webhook.build.RepositoryBuildAction;
 import com.gitee.jenkins.webhook.status.BranchBuildPageRedirectAction;
 import com.gitee.jenkins.webhook.status.BranchStatusPngAction;
 import com.gitee.jenkins.webhook.status.CommitBuildPageRedirectAction;
@@ -12,6 +20,8 @@ import com.gitee.jenkins.webhook.status.CommitStatusPngAction;
 import com.gitee.jenkins.webhook.status.StatusJsonAction;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableSet;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Job;
@@ -19,13 +29,13 @@ import hudson.security.ACL;
 import hudson.util.HttpResponses;
 import jenkins.model.Jenkins;
 import jenkins.scm.api.SCMSourceOwner;
-import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -41,6 +51,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public class ActionResolver {
 
     private static final Logger LOGGER = Logger.getLogger(ActionResolver.class.getName());
+    private static final Set<String> SUPPORTED_EVENTS = ImmutableSet.of("Merge Request Hook", "Push Hook", "Tag Push Hook", "Note Hook", "Pipeline Hook");
     private static final Pattern COMMIT_STATUS_PATTERN =
             Pattern.compile("^(refs/[^/]+/)?(commits|builds)/(?<sha1>[0-9a-fA-F]+)(?<statusJson>/status.json)?$");
 
@@ -53,6 +64,42 @@ public class ActionResolver {
         return resolveAction(project, Joiner.on('/').join(restOfPathParts), request);
     }
 
+    /**
+     * Resolves a web hook of the global end-point, the jobs are found by the repository of the hook.
+     */
+    public WebHookAction resolveByRepository(StaplerRequest request) {
+        if (!request.getMethod().equals("POST")) {
+            LOGGER.log(Level.FINE, "Unsupported HTTP method: {0}", request.getMethod());
+            return new NoopAction();
+        }
+        final String eventHeader = request.getHeader("X-Gitee-Event");
+        if (eventHeader == null || !SUPPORTED_EVENTS.contains(eventHeader)) {
+            LOGGER.log(Level.FINE, "Missing or unsupported X-Gitee-Event header: {0}", eventHeader);
+            return new NoopAction();
+        }
+        final WebHookPayload payload = getRequestBody(request);
+        final String tokenHeader = request.getHeader("X-Gitee-Token");
+        return WebHookDeduplicator.get().deduplicate(GiteeRepositoryWebHook.WEBHOOK_URL, eventHeader, request, payload, new Supplier<WebHookAction>() {
+            @Override
+            public WebHookAction get() {
+                return new RepositoryBuildAction(payload, getHookType(eventHeader), tokenHeader);
+            }
+        });
+    }
+
+    private static Class<? extends WebHook> getHookType(String eventHeader) {
+        switch (eventHeader) {
+            case "Merge Request Hook":
+                return PullRequestHook.class;
+            case "Note Hook":
+                return NoteHook.class;
+            case "Pipeline Hook":
+                return PipelineHook.class;
+            default:
+                return PushHook.class;
+        }
+    }
+
     private WebHookAction resolveAction(Item project, String restOfPath, StaplerRequest request) {
         String method = request.getMethod();
         if (method.equals("POST")) {
@@ -98,38 +145,61 @@ public class ActionResolver {
         }
     }
 
-    private WebHookAction onPost(Item project, StaplerRequest request) {
-        String eventHeader = request.getHeader("X-Gitee-Event");
+    private WebHookAction onPost(final Item project, StaplerRequest request) {
+        final String eventHeader = request.getHeader("X-Gitee-Event");
         if (eventHeader == null) {
             LOGGER.log(Level.FINE, "Missing X-Gitee-Event header");
             return new NoopAction();
         }
-        String tokenHeader = request.getHeader("X-Gitee-Token");
+        if (!SUPPORTED_EVENTS.contains(eventHeader)) {
+            LOGGER.log(Level.FINE, "Unsupported X-Gitee-Event header: {0}", eventHeader);
+            return new NoopAction();
+        }
+        final String tokenHeader = request.getHeader("X-Gitee-Token");
+        final WebHookPayload payload = getRequestBody(request);
+        return WebHookDeduplicator.get().deduplicate(project.getFullName(), eventHeader, request, payload, new Supplier<WebHookAction>() {
+            @Override
+            public WebHookAction get() {
+                if (isAsyncIngestion(project)) {
+                    return new QueuedBuildAction(project, eventHeader, tokenHeader,
+                                                 new DeferredBuildAction(project, eventHeader, payload.detach(), tokenHeader));
+                }
+                return createBuildAction(project, eventHeader, payload, tokenHeader);
+            }
+        });
+    }
+
+    private static WebHookAction createBuildAction(Item project, String eventHeader, WebHookPayload payload, String tokenHeader) {
         switch (eventHeader) {
             case "Merge Request Hook":
-                return new PullRequestBuildAction(project, getRequestBody(request), tokenHeader);
+                return new PullRequestBuildAction(project, payload, tokenHeader);
             case "Push Hook":
             case "Tag Push Hook":
-                return new PushBuildAction(project, getRequestBody(request), tokenHeader);
+                return new PushBuildAction(project, payload, tokenHeader);
             case "Note Hook":
-                return new NoteBuildAction(project, getRequestBody(request), tokenHeader);
+                return new NoteBuildAction(project, payload, tokenHeader);
             case "Pipeline Hook":
-                return new PipelineBuildAction(project, getRequestBody(request), tokenHeader);
+                return new PipelineBuildAction(project, payload, tokenHeader);
             default:
-                LOGGER.log(Level.FINE, "Unsupported X-Gitee-Event header: {0}", eventHeader);
                 return new NoopAction();
         }
     }
 
-    private String getRequestBody(StaplerRequest request) {
-        String requestBody;
+    private boolean isAsyncIngestion(Item project) {
+        if (!(project instanceof Job<?, ?> || project instanceof SCMSourceOwner)) {
+            return false;
+        }
+        GiteeConnectionConfig config = (GiteeConnectionConfig) Jenkins.getInstance().getDescriptor(GiteeConnectionConfig.class);
+        return config != null && config.isAsyncWebHookIngestion();
+    }
+
+    private WebHookPayload getRequestBody(StaplerRequest request) {
         try {
             Charset charset = request.getCharacterEncoding() == null ?  UTF_8 : Charset.forName(request.getCharacterEncoding());
-            requestBody = IOUtils.toString(request.getInputStream(), charset);
+            return WebHookPayload.read(request.getInputStream(), request.getContentLength(), charset);
         } catch (IOException e) {
             throw HttpResponses.error(500, "Failed to read request body");
         }
-        return requestBody;
     }
 
     private Item resolveProject(final String projectName, final Iterator<String> restOfPathParts) {
@@ -151,6 +221,50 @@ public class ActionResolver {
         });
     }
 
+    private static class DeferredBuildAction implements Runnable {
+        private final Item project;
+        private final String eventHeader;
+        private final WebHookPayload payload;
+        private final String tokenHeader;
+
+        DeferredBuildAction(Item project, String eventHeader, WebHookPayload payload, String tokenHeader) {
+            this.project = project;
+            this.eventHeader = eventHeader;
+            this.payload = payload;
+            this.tokenHeader = tokenHeader;
+        }
+
+        public void run() {
+            ACL.impersonate(ACL.SYSTEM, new Runnable() {
+                public void run() {
+                    try {
+                        createBuildAction(project, eventHeader, payload, tokenHeader).execute(null);
+                    } catch (HttpResponses.HttpResponseException e) {
+                        // the synchronous path answers the request this way, nobody is waiting for it here
+                        LOGGER.log(Level.FINEST, "Processed queued {0} for {1}", toArray(eventHeader, project.getFullName()));
+                    }
+                }
+            });
+        }
+    }
+
+    static class DuplicateAction implements WebHookAction {
+        private final String eventHeader;
+
+        DuplicateAction(String eventHeader) {
+            this.eventHeader = eventHeader;
+        }
+
+        public void execute(StaplerResponse response) {
+            try {
+                response.setContentType("text/plain;charset=UTF-8");
+                response.getWriter().println(eventHeader + " has already been received.");
+            } catch (IOException e) {
+                throw HttpResponses.error(500, "Failed to write response");
+            }
+        }
+    }
+
     static class NoopAction implements WebHookAction {
         public void execute(StaplerResponse response) {
         }
@@ -0,0 +1,128 @@
+package com.gitee.jenkins.webhook;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes the pushes of a monorepo received on the global end-point to the jobs owning the changed directories.
+ * <p>
+ * Each line of the configuration maps a path prefix to the full names of the jobs owning it, e.g.
+ * {@code services/billing = billing/build, billing/deploy}. The prefixes are kept in a trie of path segments,
+ * so routing a push costs one walk per changed path.
+ */
+public final class PathRoutingTable {
+
+    private static final PathRoutingTable EMPTY = new PathRoutingTable();
+    private static volatile PathRoutingTable current = EMPTY;
+
+    private final Node root = new Node();
+    private final Set<String> routedJobs = new HashSet<>();
+
+    private PathRoutingTable() { }
+
+    public static PathRoutingTable get() {
+        return current;
+    }
+
+    public static void configure(String routes) {
+        current = parse(routes);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a line is not of the form {@code path = job[, job...]}
+     */
+    public static PathRoutingTable parse(String routes) {
+        if (routes == null || routes.trim().isEmpty()) {
+            return EMPTY;
+        }
+        PathRoutingTable table = new PathRoutingTable();
+        for (String line : Splitter.on('\n').omitEmptyStrings().trimResults().split(routes)) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException(line);
+            }
+            List<String> jobs = Lists.newArrayList(Splitter.on(',').omitEmptyStrings().trimResults().split(line.substring(separator + 1)));
+            if (jobs.isEmpty()) {
+                throw new IllegalArgumentException(line);
+            }
+            table.add(line.substring(0, separator).trim(), jobs);
+        }
+        return table;
+    }
+
+    public boolean isEmpty() {
+        return routedJobs.isEmpty();
+    }
+
+    public int getRouteCount() {
+        return root.count();
+    }
+
+    /**
+     * @return {@code true} if the job only builds pushes that change one of its paths
+     */
+    public boolean isRouted(String jobFullName) {
+        return routedJobs.contains(jobFullName);
+    }
+
+    /**
+     * @return the full names of the jobs owning at least one of the changed paths
+     */
+    public Set<String> route(Collection<String> changedPaths) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String path : changedPaths) {
+            Node node = root;
+            result.addAll(node.jobs);
+            for (String segment : segments(path)) {
+                node = node.children.get(segment);
+                if (node == null) {
+                    break;
+                }
+                result.addAll(node.jobs);
+            }
+        }
+        return result;
+    }
+
+    private void add(String prefix, Collection<String> jobs) {
+        Node node = root;
+        for (String segment : segments(prefix)) {
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        node.jobs.addAll(jobs);
+        routedJobs.addAll(jobs);
+    }
+
+    private static Iterable<String> segments(String path) {
+        return Splitter.on('/').omitEmptyStrings().split(path);
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final Set<String> jobs = new LinkedHashSet<>();
+
+        private int count() {
+            int count = jobs.isEmpty() ? 0 : 1;
+            for (Node child : children.values()) {
+                count += child.count();
+            }
+            return count;
+        }
+    }
+}
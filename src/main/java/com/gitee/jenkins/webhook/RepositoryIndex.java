@@ -0,0 +1,231 @@
+package com.gitee.jenkins.webhook;
+
+import com.gitee.jenkins.trigger.GiteePushTrigger;
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.eclipse.jgit.transport.URIish;
+
+import javax.annotation.Nonnull;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * In-memory index of the jobs with a {@link GiteePushTrigger} by the repositories of their {@link GitSCM}.
+ * Used to route the web hooks of the global end-point without walking all items.
+ */
+public final class RepositoryIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(RepositoryIndex.class.getName());
+    private static final RepositoryIndex INSTANCE = new RepositoryIndex();
+
+    private final Map<String, Set<String>> jobsByRepository = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> repositoriesByJob = new HashMap<>();
+
+    private RepositoryIndex() { }
+
+    public static RepositoryIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the full names of the jobs that build one of the given repositories
+     */
+    public Set<String> getJobs(Collection<String> repositoryUrls) {
+        Set<String> result = new HashSet<>();
+        for (String url : repositoryUrls) {
+            String key = normalize(url);
+            if (key != null) {
+                Set<String> jobs = jobsByRepository.get(key);
+                if (jobs != null) {
+                    result.addAll(jobs);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int getRepositoryCount() {
+        return jobsByRepository.size();
+    }
+
+    /**
+     * Reads the repositories of the job without holding the lock of the index, it is only held to compare and update
+     * them.
+     */
+    void reindex(Job<?, ?> job) {
+        update(job.getFullName(), getRepositories(job));
+    }
+
+    private synchronized void update(String fullName, Set<String> repositories) {
+        Set<String> current = repositoriesByJob.get(fullName);
+        if (current == null ? repositories.isEmpty() : current.equals(repositories)) {
+            return;
+        }
+        remove(fullName);
+        if (repositories.isEmpty()) {
+            return;
+        }
+        repositoriesByJob.put(fullName, repositories);
+        for (String repository : repositories) {
+            Set<String> jobs = jobsByRepository.get(repository);
+            Set<String> updated = jobs == null ? new HashSet<String>() : new HashSet<>(jobs);
+            updated.add(fullName);
+            jobsByRepository.put(repository, Collections.unmodifiableSet(updated));
+        }
+    }
+
+    synchronized void remove(String fullName) {
+        Set<String> repositories = repositoriesByJob.remove(fullName);
+        if (repositories == null) {
+            return;
+        }
+        for (String repository : repositories) {
+            Set<String> jobs = jobsByRepository.get(repository);
+            if (jobs != null) {
+                Set<String> updated = new HashSet<>(jobs);
+                updated.remove(fullName);
+                if (updated.isEmpty()) {
+                    jobsByRepository.remove(repository);
+                } else {
+                    jobsByRepository.put(repository, Collections.unmodifiableSet(updated));
+                }
+            }
+        }
+    }
+
+    private synchronized void reindexAll() {
+        long start = System.currentTimeMillis();
+        jobsByRepository.clear();
+        repositoriesByJob.clear();
+        for (Job<?, ?> job : Jenkins.getInstance().getAllItems(Job.class)) {
+            reindex(job);
+        }
+        LOGGER.log(Level.FINE, "Indexed {0} repositories of {1} jobs in {2} ms",
+                   toArray(jobsByRepository.size(), repositoriesByJob.size(), System.currentTimeMillis() - start));
+    }
+
+    private static Set<String> getRepositories(Job<?, ?> job) {
+        if (GiteePushTrigger.getFromJob(job) == null) {
+            return Collections.emptySet();
+        }
+        SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+        if (item == null) {
+            return Collections.emptySet();
+        }
+        Set<String> repositories = new HashSet<>();
+        for (SCM scm : item.getSCMs()) {
+            if (scm instanceof GitSCM) {
+                for (UserRemoteConfig remote : ((GitSCM) scm).getUserRemoteConfigs()) {
+                    String key = normalize(remote.getUrl());
+                    if (key != null) {
+                        repositories.add(key);
+                    }
+                }
+            }
+        }
+        return repositories.isEmpty() ? Collections.<String>emptySet() : ImmutableSet.copyOf(repositories);
+    }
+
+    /**
+     * Reduces the HTTP and SSH URLs of a repository to {@code host/namespace/name}.
+     */
+    static String normalize(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        try {
+            URIish uri = new URIish(url.trim());
+            if (uri.getHost() == null || uri.getPath() == null) {
+                return null;
+            }
+            String path = uri.getPath();
+            if (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            if (path.endsWith(".git")) {
+                path = path.substring(0, path.length() - 4);
+            }
+            if (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            return (uri.getHost() + "/" + path).toLowerCase();
+        } catch (URISyntaxException e) {
+            LOGGER.log(Level.FINEST, "Invalid repository url: {0}", url);
+            return null;
+        }
+    }
+
+    @Extension
+    public static class RepositoryIndexItemListener extends ItemListener {
+        @Override
+        public void onLoaded() {
+            ACL.impersonate(ACL.SYSTEM, new Runnable() {
+                public void run() {
+                    INSTANCE.reindexAll();
+                }
+            });
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof Job<?, ?>) {
+                INSTANCE.reindex((Job<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            if (item instanceof Job<?, ?>) {
+                INSTANCE.reindex((Job<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof Job<?, ?>) {
+                INSTANCE.remove(item.getFullName());
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (item instanceof Job<?, ?>) {
+                INSTANCE.remove(oldFullName);
+                INSTANCE.reindex((Job<?, ?>) item);
+            }
+        }
+    }
+
+    /**
+     * Pipelines only know their repositories after they checked them out, the index only changes if they differ.
+     */
+    @Extension
+    public static class RepositoryIndexRunListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> build, @Nonnull TaskListener listener) {
+            INSTANCE.reindex(build.getParent());
+        }
+    }
+}
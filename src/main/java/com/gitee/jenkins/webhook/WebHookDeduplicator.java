@@ -0,0 +1,172 @@
+package com.gitee.jenkins.webhook;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Remembers the web hooks delivered within a time window so that re-deliveries of Gitee don't trigger twice.
+ * A delivery is identified by its delivery header or, if there is none, by a digest of the fields of the payload
+ * that tell two events apart. Only deliveries that have been accepted or queued are remembered.
+ */
+public final class WebHookDeduplicator {
+
+    public static final int DEFAULT_WINDOW_SECONDS = 60;
+
+    private static final Logger LOGGER = Logger.getLogger(WebHookDeduplicator.class.getName());
+    private static final WebHookDeduplicator INSTANCE = new WebHookDeduplicator();
+    private static final int MAXIMUM_SIZE = 10000;
+    private static final String[] DELIVERY_HEADERS = new String[] {"X-Gitee-Delivery", "X-Gitee-Delivery-Id"};
+    // objects whose fields are part of the digest, everything else (e.g. commits) is skipped
+    private static final Set<String> IDENTITY_OBJECTS = ImmutableSet.of("repository", "project", "pull_request", "head", "comment", "note", "object_attributes");
+    private static final Set<String> IDENTITY_FIELDS = ImmutableSet.of(
+            "action", "ref", "before", "after", "full_name", "path_with_namespace", "number", "iid", "id", "sha", "status", "state");
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final AtomicLong suppressedCount = new AtomicLong();
+    private volatile int windowSeconds = DEFAULT_WINDOW_SECONDS;
+    private volatile Cache<String, Boolean> deliveries = createCache(DEFAULT_WINDOW_SECONDS);
+
+    private WebHookDeduplicator() { }
+
+    public static WebHookDeduplicator get() {
+        return INSTANCE;
+    }
+
+    public synchronized void setWindowSeconds(int windowSeconds) {
+        if (this.windowSeconds != windowSeconds) {
+            this.windowSeconds = windowSeconds;
+            deliveries = createCache(windowSeconds);
+        }
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.get();
+    }
+
+    public long getTrackedCount() {
+        return deliveries.size();
+    }
+
+    /**
+     * The delivery is remembered while its action runs, and forgotten again if the action rejects the web hook or fails,
+     * so that Gitee's retry of a rejected delivery is processed.
+     *
+     * @param target the item or end-point that received the web hook
+     * @param action creates the action processing the web hook, it is not called for a duplicate
+     * @return the action answering the duplicate if the same delivery has already been received within the window,
+     * otherwise the action processing the web hook
+     */
+    public WebHookAction deduplicate(String target, String eventHeader, StaplerRequest request, WebHookPayload payload,
+                                     Supplier<? extends WebHookAction> action) {
+        String identity = windowSeconds <= 0 ? null : getDeliveryIdentity(target, eventHeader, request, payload);
+        if (identity == null) {
+            return action.get();
+        }
+        Cache<String, Boolean> cache = deliveries;
+        if (cache.asMap().putIfAbsent(identity, Boolean.TRUE) != null) {
+            suppressedCount.incrementAndGet();
+            LOGGER.log(Level.FINE, "Suppressing duplicate {0} for {1}", toArray(eventHeader, target));
+            return new ActionResolver.DuplicateAction(eventHeader);
+        }
+        try {
+            return new TrackedAction(cache, identity, action.get());
+        } catch (RuntimeException e) {
+            cache.invalidate(identity);
+            throw e;
+        }
+    }
+
+    private String getDeliveryIdentity(String target, String eventHeader, StaplerRequest request, WebHookPayload payload) {
+        Hasher hasher = Hashing.sha1().newHasher()
+                .putString(target, UTF_8).putChar('\n')
+                .putString(eventHeader, UTF_8).putChar('\n');
+        for (String header : DELIVERY_HEADERS) {
+            String delivery = request.getHeader(header);
+            if (delivery != null) {
+                return hasher.putString(delivery, UTF_8).hash().toString();
+            }
+        }
+        try (JsonParser parser = payload.createParser(jsonFactory)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            digestObject(parser, "", hasher);
+            return hasher.hash().toString();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to digest web hook payload", e);
+            return null;
+        }
+    }
+
+    private void digestObject(JsonParser parser, String path, Hasher hasher) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && IDENTITY_OBJECTS.contains(name)) {
+                digestObject(parser, path + name + ".", hasher);
+            } else if (value.isStructStart()) {
+                parser.skipChildren();
+            } else if (value.isScalarValue() && IDENTITY_FIELDS.contains(name)) {
+                hasher.putString(path, UTF_8).putString(name, UTF_8).putChar('=')
+                      .putString(parser.getText(), UTF_8).putChar('\n');
+            }
+        }
+    }
+
+    private static class TrackedAction implements WebHookAction {
+        private final Cache<String, Boolean> cache;
+        private final String identity;
+        private final WebHookAction action;
+
+        TrackedAction(Cache<String, Boolean> cache, String identity, WebHookAction action) {
+            this.cache = cache;
+            this.identity = identity;
+            this.action = action;
+        }
+
+        public void execute(StaplerResponse response) {
+            try {
+                action.execute(response);
+            } catch (WebHookResponse e) {
+                if (!e.isAccepted()) {
+                    cache.invalidate(identity);
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                // authentication failures, a full queue and processing errors
+                cache.invalidate(identity);
+                throw e;
+            }
+        }
+    }
+
+    private static Cache<String, Boolean> createCache(int windowSeconds) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(Math.max(windowSeconds, 1), TimeUnit.SECONDS)
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.gitee.jenkins.webhook;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.gitee.jenkins.cause.PayloadStore;
+import com.gitee.jenkins.gitee.hook.model.WebHook;
+import com.gitee.jenkins.util.JsonUtil;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The body of a web hook request.
+ * The request stream is read once into a per thread buffer and the hook model is bound from a copy of these bytes,
+ * the body is only decoded into a String when it is needed.
+ */
+public final class WebHookPayload {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    // larger buffers are not kept for the next request of the thread
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_BUFFER_SIZE];
+        }
+    };
+
+    private final byte[] bytes;
+    private final int length;
+    private final Charset charset;
+    // whether the bytes are the buffer of the thread
+    private final boolean shared;
+    private String text;
+    private final Supplier<String> storedHash = Suppliers.memoize(new Supplier<String>() {
+        @Override
+        public String get() {
+            return PayloadStore.get().put(getText());
+        }
+    });
+
+    private WebHookPayload(byte[] bytes, int length, Charset charset, String text, boolean shared) {
+        this.bytes = bytes;
+        this.length = length;
+        this.charset = charset;
+        this.text = text;
+        this.shared = shared;
+    }
+
+    public WebHookPayload(String text) {
+        this(null, 0, UTF_8, text, false);
+    }
+
+    /**
+     * Reads the stream into the buffer of the current thread.
+     * The returned payload must not be used after the thread handles the next request, see {@link #detach()}.
+     */
+    public static WebHookPayload read(InputStream in, int contentLength, Charset charset) throws IOException {
+        byte[] buffer = BUFFER.get();
+        if (contentLength > buffer.length) {
+            buffer = new byte[contentLength];
+        }
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                // a body of exactly the content length fills the buffer, it only grows if there is more to read
+                int next = in.read();
+                if (next == -1) {
+                    break;
+                }
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                buffer[length++] = (byte) next;
+            }
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+            BUFFER.set(buffer);
+        }
+        return new WebHookPayload(buffer, length, charset, null, true);
+    }
+
+    /**
+     * @return a payload that does not share the buffer of the current thread
+     */
+    public WebHookPayload detach() {
+        if (bytes == null) {
+            return this;
+        }
+        return new WebHookPayload(Arrays.copyOf(bytes, length), length, charset, text, false);
+    }
+
+    /**
+     * Binds the payload, large lists of the hook models are bound on their first access.
+     * A payload still in the buffer of the thread, which the next request overwrites, is bound from a copy.
+     */
+    public <T> T bind(Class<T> type) {
+        if (bytes != null && UTF_8.equals(charset)) {
+            return shared ? detach().bind(type) : JsonUtil.readLazily(bytes, 0, length, type);
+        }
+        // Jackson detects only the unicode encodings from the bytes
+        return JsonUtil.readLazily(getText(), type);
+    }
+
+    public <T extends WebHook> T bindHook(Class<T> type) {
+        T hook = bind(type);
+        hook.setJsonBody(getText());
+        hook.setJsonBodyHash(storedHash);
+        return hook;
+    }
+
+    JsonParser createParser(JsonFactory factory) throws IOException {
+        if (bytes != null && UTF_8.equals(charset)) {
+            return factory.createParser(bytes, 0, length);
+        }
+        return factory.createParser(getText());
+    }
+
+    public String getText() {
+        if (text == null) {
+            text = new String(bytes, 0, length, charset);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,158 @@
+package com.gitee.jenkins.webhook;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Bounded in-memory queue used when web hooks are ingested asynchronously.
+ * The request thread only enqueues the raw payload, a small worker pool runs the trigger path.
+ */
+public final class WebHookQueue {
+
+    public static final int DEFAULT_CAPACITY = 100;
+    public static final int DEFAULT_WORKER_THREADS = 2;
+
+    private static final Logger LOGGER = Logger.getLogger(WebHookQueue.class.getName());
+    private static final WebHookQueue INSTANCE = new WebHookQueue();
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    private int capacity = DEFAULT_CAPACITY;
+    private int workerThreads = DEFAULT_WORKER_THREADS;
+    private ThreadPoolExecutor executor;
+    private int executorCapacity;
+
+    private WebHookQueue() { }
+
+    public static WebHookQueue get() {
+        return INSTANCE;
+    }
+
+    public synchronized void configure(int capacity, int workerThreads) {
+        this.capacity = Math.max(1, capacity);
+        this.workerThreads = Math.max(1, workerThreads);
+        if (executor == null) {
+            return;
+        }
+        if (executorCapacity != this.capacity) {
+            // the old pool still drains what has already been accepted
+            executor.shutdown();
+            executor = null;
+        } else if (this.workerThreads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(this.workerThreads);
+            executor.setCorePoolSize(this.workerThreads);
+        } else {
+            executor.setCorePoolSize(this.workerThreads);
+            executor.setMaximumPoolSize(this.workerThreads);
+        }
+    }
+
+    /**
+     * @return {@code false} if the queue is full and the web hook has to be rejected
+     */
+    public boolean offer(String description, Runnable task) {
+        try {
+            getExecutor().execute(new QueuedTask(description, task));
+            acceptedCount.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Web hook queue is full, rejecting {0}", description);
+            return false;
+        }
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public synchronized int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public synchronized int getActiveWorkers() {
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getAverageWaitMillis() {
+        long processed = processedCount.get();
+        return processed == 0 ? 0 : totalWaitMillis.get() / processed;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                                              new ArrayBlockingQueue<Runnable>(capacity),
+                                              new NamingThreadFactory(new DaemonThreadFactory(), "Gitee web hook worker"));
+            executor.allowCoreThreadTimeOut(true);
+            executorCapacity = capacity;
+        }
+        return executor;
+    }
+
+    private void recordWait(long waitMillis) {
+        processedCount.incrementAndGet();
+        totalWaitMillis.addAndGet(waitMillis);
+        long max = maxWaitMillis.get();
+        while (waitMillis > max && !maxWaitMillis.compareAndSet(max, waitMillis)) {
+            max = maxWaitMillis.get();
+        }
+    }
+
+    private class QueuedTask implements Runnable {
+        private final String description;
+        private final Runnable task;
+        private final long enqueuedAt = System.currentTimeMillis();
+
+        QueuedTask(String description, Runnable task) {
+            this.description = description;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long waitMillis = System.currentTimeMillis() - enqueuedAt;
+            recordWait(waitMillis);
+            LOGGER.log(Level.FINE, "Processing {0} after {1} ms in queue", toArray(description, waitMillis));
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to process " + description, e);
+            }
+        }
+    }
+}
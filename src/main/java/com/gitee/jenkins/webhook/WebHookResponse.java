@@ -0,0 +1,39 @@
+package com.gitee.jenkins.webhook;
+
+import hudson.util.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+/**
+ * Plain text answer of a web hook whose status is known before it is sent.
+ */
+public class WebHookResponse extends HttpResponses.HttpResponseException {
+
+    private final int status;
+    private final String text;
+
+    public WebHookResponse(int status, String text) {
+        this.status = status;
+        this.text = text;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return whether the web hook has been accepted, a rejected one may be delivered again
+     */
+    public boolean isAccepted() {
+        return status < 400;
+    }
+
+    public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node) throws IOException, ServletException {
+        rsp.setStatus(status);
+        rsp.setContentType("text/plain;charset=UTF-8");
+        rsp.getWriter().println(text);
+    }
+}
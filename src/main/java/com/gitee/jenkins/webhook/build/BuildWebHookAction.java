@@ -1,6 +1,5 @@
 package com.gitee.jenkins.webhook.build;
 
-import java.io.IOException;
 import java.util.logging.Logger;
 
 import com.gitee.jenkins.gitee.hook.model.WebHook;
@@ -12,13 +11,11 @@ import hudson.util.HttpResponses;
 import jenkins.model.Jenkins;
 import org.acegisecurity.Authentication;
 import org.apache.commons.lang.StringUtils;
-import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import com.gitee.jenkins.trigger.GiteePushTrigger;
 import com.gitee.jenkins.connection.GiteeConnectionConfig;
 import com.gitee.jenkins.webhook.WebHookAction;
-
-import javax.servlet.ServletException;
+import com.gitee.jenkins.webhook.WebHookResponse;
 
 /**
  * @author Xinran Xiao
@@ -38,13 +35,11 @@ abstract class BuildWebHookAction implements WebHookAction {
     }
 
     public static HttpResponses.HttpResponseException responseWithHook(final WebHook webHook) {
-        return new HttpResponses.HttpResponseException() {
-            public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node) throws IOException, ServletException {
-                String text = webHook.getWebHookDescription() + " has been accepted.";
-                rsp.setContentType("text/plain;charset=UTF-8");
-                rsp.getWriter().println(text);
-            }
-        };
+        return new WebHookResponse(200, webHook.getWebHookDescription() + " has been accepted.");
+    }
+
+    public static HttpResponses.HttpResponseException responseWithStatus(final int status, final String text) {
+        return new WebHookResponse(status, text);
     }
 
     protected abstract static class TriggerNotifier implements Runnable {
@@ -2,7 +2,7 @@ package com.gitee.jenkins.webhook.build;
 
 import com.gitee.jenkins.trigger.GiteePushTrigger;
 import com.gitee.jenkins.gitee.hook.model.NoteHook;
-import com.gitee.jenkins.util.JsonUtil;
+import com.gitee.jenkins.webhook.WebHookPayload;
 import com.gitee.jenkins.webhook.WebHookAction;
 import hudson.model.Item;
 import hudson.model.Job;
@@ -27,10 +27,19 @@ public class NoteBuildAction extends BuildWebHookAction {
     private final String secretToken;
 
     public NoteBuildAction(Item project, String json, String secretToken) {
-        LOGGER.log(Level.FINE, "Note: {0}", toPrettyPrint(json));
+        this(project, new WebHookPayload(json), secretToken);
+    }
+
+    public NoteBuildAction(Item project, WebHookPayload payload, String secretToken) {
+        this(project, payload.bindHook(NoteHook.class), secretToken);
+    }
+
+    public NoteBuildAction(Item project, NoteHook noteHook, String secretToken) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Note: {0}", toPrettyPrint(noteHook.getJsonBody()));
+        }
         this.project = project;
-        this.noteHook = JsonUtil.read(json, NoteHook.class);
-        this.noteHook.setJsonBody(json);
+        this.noteHook = noteHook;
         this.secretToken = secretToken;
     }
 
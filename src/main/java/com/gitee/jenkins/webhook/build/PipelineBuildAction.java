@@ -2,7 +2,7 @@ package com.gitee.jenkins.webhook.build;
 
 import com.gitee.jenkins.trigger.GiteePushTrigger;
 import com.gitee.jenkins.gitee.hook.model.*;
-import com.gitee.jenkins.util.JsonUtil;
+import com.gitee.jenkins.webhook.WebHookPayload;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.security.ACL;
@@ -28,10 +28,19 @@ public class PipelineBuildAction extends BuildWebHookAction {
     private final String secretToken;
 
     public PipelineBuildAction(Item project, String json, String secretToken) {
-        LOGGER.log(Level.FINE, "Pipeline event: {0}", toPrettyPrint(json));
+        this(project, new WebHookPayload(json), secretToken);
+    }
+
+    public PipelineBuildAction(Item project, WebHookPayload payload, String secretToken) {
+        this(project, payload.bindHook(PipelineHook.class), secretToken);
+    }
+
+    public PipelineBuildAction(Item project, PipelineHook pipelineBuildHook, String secretToken) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Pipeline event: {0}", toPrettyPrint(pipelineBuildHook.getJsonBody()));
+        }
         this.project = project;
-        this.pipelineBuildHook = JsonUtil.read(json, PipelineHook.class);
-        this.pipelineBuildHook.setJsonBody(json);
+        this.pipelineBuildHook = pipelineBuildHook;
         this.secretToken = secretToken;
     }
 
@@ -4,7 +4,7 @@ import com.gitee.jenkins.gitee.hook.model.PullRequestHook;
 import com.gitee.jenkins.trigger.GiteePushTrigger;
 import com.gitee.jenkins.gitee.hook.model.PullRequestObjectAttributes;
 import com.gitee.jenkins.gitee.hook.model.Project;
-import com.gitee.jenkins.util.JsonUtil;
+import com.gitee.jenkins.webhook.WebHookPayload;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.security.ACL;
@@ -27,10 +27,19 @@ public class PullRequestBuildAction extends BuildWebHookAction {
     private final String secretToken;
 
     public PullRequestBuildAction(Item project, String json, String secretToken) {
-        LOGGER.log(Level.FINE, "PullRequest: {0}", toPrettyPrint(json));
+        this(project, new WebHookPayload(json), secretToken);
+    }
+
+    public PullRequestBuildAction(Item project, WebHookPayload payload, String secretToken) {
+        this(project, payload.bindHook(PullRequestHook.class), secretToken);
+    }
+
+    public PullRequestBuildAction(Item project, PullRequestHook pullRequestHook, String secretToken) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "PullRequest: {0}", toPrettyPrint(pullRequestHook.getJsonBody()));
+        }
         this.project = project;
-        this.pullRequestHook = JsonUtil.read(json, PullRequestHook.class);
-        this.pullRequestHook.setJsonBody(json);
+        this.pullRequestHook = pullRequestHook;
         this.secretToken = secretToken;
     }
 
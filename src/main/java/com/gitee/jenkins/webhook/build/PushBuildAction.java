@@ -3,7 +3,7 @@ package com.gitee.jenkins.webhook.build;
 import com.gitee.jenkins.trigger.GiteePushTrigger;
 import com.gitee.jenkins.gitee.hook.model.Project;
 import com.gitee.jenkins.gitee.hook.model.PushHook;
-import com.gitee.jenkins.util.JsonUtil;
+import com.gitee.jenkins.webhook.WebHookPayload;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.security.ACL;
@@ -34,10 +34,19 @@ public class PushBuildAction extends BuildWebHookAction {
     private final String secretToken;
 
     public PushBuildAction(Item project, String json, String secretToken) {
-        LOGGER.log(Level.FINE, "Push: {0}", toPrettyPrint(json));
+        this(project, new WebHookPayload(json), secretToken);
+    }
+
+    public PushBuildAction(Item project, WebHookPayload payload, String secretToken) {
+        this(project, payload.bindHook(PushHook.class), secretToken);
+    }
+
+    public PushBuildAction(Item project, PushHook pushHook, String secretToken) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Push: {0}", toPrettyPrint(pushHook.getJsonBody()));
+        }
         this.project = project;
-        this.pushHook = JsonUtil.read(json, PushHook.class);
-        this.pushHook.setJsonBody(json);
+        this.pushHook = pushHook;
         this.secretToken = secretToken;
     }
 
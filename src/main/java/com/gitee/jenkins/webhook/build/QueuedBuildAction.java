@@ -0,0 +1,60 @@
+package com.gitee.jenkins.webhook.build;
+
+import com.gitee.jenkins.trigger.GiteePushTrigger;
+import com.gitee.jenkins.webhook.WebHookQueue;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.util.HttpResponses;
+import jenkins.model.Jenkins;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Validates the web hook on the request thread and hands the actual processing over to the {@link WebHookQueue}.
+ */
+public class QueuedBuildAction extends BuildWebHookAction {
+
+    private final static Logger LOGGER = Logger.getLogger(QueuedBuildAction.class.getName());
+    private final Item project;
+    private final String eventName;
+    private final String secretToken;
+    private final Runnable deferredAction;
+
+    public QueuedBuildAction(Item project, String eventName, String secretToken, Runnable deferredAction) {
+        this.project = project;
+        this.eventName = eventName;
+        this.secretToken = secretToken;
+        this.deferredAction = deferredAction;
+    }
+
+    @Override
+    void processForCompatibility() {
+
+    }
+
+    @Override
+    void execute() {
+        if (project instanceof Job<?, ?>) {
+            ACL.impersonate(ACL.SYSTEM, new TriggerNotifier(project, secretToken, Jenkins.getAuthentication()) {
+                @Override
+                protected void performOnPost(GiteePushTrigger trigger) {
+                    enqueue();
+                }
+            });
+        } else {
+            enqueue();
+        }
+        throw responseWithStatus(202, eventName + " has been queued.");
+    }
+
+    private void enqueue() {
+        if (!WebHookQueue.get().offer(eventName + " for " + project.getFullName(), deferredAction)) {
+            throw HttpResponses.errorWithoutStack(429, "Web hook queue is full, please retry later");
+        }
+        LOGGER.log(Level.FINE, "Queued {0} for {1}", toArray(eventName, project.getFullName()));
+    }
+}
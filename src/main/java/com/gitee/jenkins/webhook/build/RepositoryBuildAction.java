@@ -0,0 +1,204 @@
+package com.gitee.jenkins.webhook.build;
+
+import com.gitee.jenkins.connection.GiteeConnectionConfig;
+import com.gitee.jenkins.gitee.hook.model.NoteHook;
+import com.gitee.jenkins.gitee.hook.model.PipelineHook;
+import com.gitee.jenkins.gitee.hook.model.Project;
+import com.gitee.jenkins.gitee.hook.model.PullRequestHook;
+import com.gitee.jenkins.gitee.hook.model.PushHook;
+import com.gitee.jenkins.gitee.hook.model.Repository;
+import com.gitee.jenkins.gitee.hook.model.WebHook;
+import com.gitee.jenkins.trigger.GiteePushTrigger;
+import com.gitee.jenkins.util.ACLUtil;
+import com.gitee.jenkins.webhook.PathRoutingTable;
+import com.gitee.jenkins.webhook.RepositoryIndex;
+import com.gitee.jenkins.webhook.WebHookAction;
+import com.gitee.jenkins.webhook.WebHookPayload;
+import com.gitee.jenkins.webhook.WebHookQueue;
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.util.HttpResponses;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.gitee.jenkins.util.LoggerUtil.toArray;
+
+/**
+ * Hands a web hook received on the global end-point to all jobs that build its repository.
+ */
+public class RepositoryBuildAction implements WebHookAction {
+
+    private final static Logger LOGGER = Logger.getLogger(RepositoryBuildAction.class.getName());
+    private final WebHookPayload payload;
+    private final Class<? extends WebHook> hookType;
+    private final WebHook hook;
+    private final String secretToken;
+
+    public RepositoryBuildAction(WebHookPayload payload, Class<? extends WebHook> hookType, String secretToken) {
+        // the jobs accepting the hook bind their own copies, possibly on the threads of the web hook queue
+        this.payload = payload.detach();
+        this.hookType = hookType;
+        this.hook = this.payload.bindHook(hookType);
+        this.secretToken = secretToken;
+    }
+
+    public void execute(StaplerResponse response) {
+        Set<String> jobNames = RepositoryIndex.get().getJobs(getRepositoryUrls(hook));
+        if (jobNames.isEmpty()) {
+            LOGGER.log(Level.FINE, "No job found for repositories {0}", getRepositoryUrls(hook));
+            throw HttpResponses.errorWithoutStack(404, "No job found for the repository of the web hook");
+        }
+        if (hook instanceof PushHook) {
+            routeByChangedPaths((PushHook) hook, jobNames);
+            if (jobNames.isEmpty()) {
+                throw BuildWebHookAction.responseWithStatus(200, hook.getWebHookDescription() + " changes no path owned by a job.");
+            }
+        }
+        final List<Job<?, ?>> accepted = new ArrayList<>();
+        for (String jobName : jobNames) {
+            final Job<?, ?> job = getJob(jobName);
+            if (job == null) {
+                continue;
+            }
+            try {
+                ACL.impersonate(ACL.SYSTEM, new BuildWebHookAction.TriggerNotifier(job, secretToken, Jenkins.getAuthentication()) {
+                    @Override
+                    protected void performOnPost(GiteePushTrigger trigger) {
+                        accepted.add(job);
+                    }
+                });
+            } catch (HttpResponses.HttpResponseException e) {
+                LOGGER.log(Level.FINE, "{0} rejected by {1}", toArray(hook.getWebHookDescription(), jobName));
+            }
+        }
+        if (accepted.isEmpty()) {
+            throw HttpResponses.errorWithoutStack(403, "No job accepted the web hook");
+        }
+        if (isAsyncIngestion()) {
+            if (!WebHookQueue.get().offer(hook.getWebHookDescription() + " for " + accepted.size() + " jobs", new FanOut(accepted))) {
+                throw HttpResponses.errorWithoutStack(429, "Web hook queue is full, please retry later");
+            }
+            throw BuildWebHookAction.responseWithStatus(202, hook.getWebHookDescription() + " has been queued for " + accepted.size() + " jobs.");
+        }
+        new FanOut(accepted).run();
+        throw BuildWebHookAction.responseWithStatus(200, hook.getWebHookDescription() + " has been accepted by " + accepted.size() + " jobs.");
+    }
+
+    /**
+     * Drops the jobs of the path routing table that own none of the changed paths.
+     */
+    private static void routeByChangedPaths(PushHook hook, Set<String> jobNames) {
+        PathRoutingTable routingTable = PathRoutingTable.get();
+        Set<String> changedPaths = hook.changedPaths();
+        if (routingTable.isEmpty() || changedPaths == null) {
+            return;
+        }
+        Set<String> affected = routingTable.route(changedPaths);
+        for (Iterator<String> it = jobNames.iterator(); it.hasNext(); ) {
+            String jobName = it.next();
+            if (routingTable.isRouted(jobName) && !affected.contains(jobName)) {
+                LOGGER.log(Level.FINE, "{0} changes no path owned by {1}", toArray(hook.getWebHookDescription(), jobName));
+                it.remove();
+            }
+        }
+    }
+
+    private BuildWebHookAction createBuildAction(Job<?, ?> job, WebHook jobHook) {
+        if (jobHook instanceof PushHook) {
+            return new PushBuildAction(job, (PushHook) jobHook, secretToken);
+        } else if (jobHook instanceof PullRequestHook) {
+            return new PullRequestBuildAction(job, (PullRequestHook) jobHook, secretToken);
+        } else if (jobHook instanceof NoteHook) {
+            return new NoteBuildAction(job, (NoteHook) jobHook, secretToken);
+        } else if (jobHook instanceof PipelineHook) {
+            return new PipelineBuildAction(job, (PipelineHook) jobHook, secretToken);
+        }
+        throw new IllegalArgumentException("Unsupported web hook: " + jobHook.getClass().getName());
+    }
+
+    private Job<?, ?> getJob(final String fullName) {
+        return ACLUtil.impersonate(ACL.SYSTEM, new ACLUtil.Function<Job<?, ?>>() {
+            public Job<?, ?> invoke() {
+                return Jenkins.getInstance().getItemByFullName(fullName, Job.class);
+            }
+        });
+    }
+
+    private boolean isAsyncIngestion() {
+        GiteeConnectionConfig config = (GiteeConnectionConfig) Jenkins.getInstance().getDescriptor(GiteeConnectionConfig.class);
+        return config != null && config.isAsyncWebHookIngestion();
+    }
+
+    static Collection<String> getRepositoryUrls(WebHook hook) {
+        Set<String> urls = new LinkedHashSet<>();
+        addUrls(urls, hook.getRepository());
+        if (hook instanceof PushHook) {
+            addUrls(urls, ((PushHook) hook).getProject());
+        } else if (hook instanceof PullRequestHook) {
+            PullRequestHook pullRequestHook = (PullRequestHook) hook;
+            addUrls(urls, pullRequestHook.getRepo());
+            if (pullRequestHook.getPullRequest() != null) {
+                addUrls(urls, pullRequestHook.getPullRequest().getTarget());
+            }
+        } else if (hook instanceof NoteHook) {
+            addUrls(urls, ((NoteHook) hook).getProject());
+        } else if (hook instanceof PipelineHook) {
+            addUrls(urls, ((PipelineHook) hook).getProject());
+        }
+        urls.remove(null);
+        return urls;
+    }
+
+    private static void addUrls(Set<String> urls, Repository repository) {
+        if (repository != null) {
+            urls.add(repository.getUrl());
+            urls.add(repository.getGitHttpUrl());
+            urls.add(repository.getGitSshUrl());
+            urls.add(repository.getHomepage());
+        }
+    }
+
+    private static void addUrls(Set<String> urls, Project project) {
+        if (project != null) {
+            urls.add(project.getUrl());
+            urls.add(project.getGitHttpUrl());
+            urls.add(project.getSshUrl());
+            urls.add(project.getWebUrl());
+        }
+    }
+
+    private class FanOut implements Runnable {
+        private final List<Job<?, ?>> jobs;
+
+        FanOut(List<Job<?, ?>> jobs) {
+            this.jobs = jobs;
+        }
+
+        public void run() {
+            ACL.impersonate(ACL.SYSTEM, new Runnable() {
+                public void run() {
+                    for (int i = 0; i < jobs.size(); i++) {
+                        try {
+                            // the build actions complete and change their hook, so every other job binds its own one
+                            WebHook jobHook = i == 0 ? hook : payload.bindHook(hookType);
+                            createBuildAction(jobs.get(i), jobHook).execute(null);
+                        } catch (HttpResponses.HttpResponseException e) {
+                            // every build action answers this way, there is only one response for all of them
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "Failed to process web hook", e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}